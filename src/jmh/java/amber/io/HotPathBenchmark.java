@@ -0,0 +1,149 @@
+package amber.io;
+
+import net.dv8tion.jda.api.entities.MessageEmbed;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Measures the methods every {{mod}} goes through, against listings of 1k, 10k and 100k packages and with exact, normalized,
+ * typo and miss queries (see SyntheticListing.queries). Reports throughput and sample time percentiles, the gc profiler adds the allocation rate.
+ * Run with gradle jmh -Pjmh.includes=HotPathBenchmark, or narrow it down like -Pjmh.includes='HotPathBenchmark.getClosestPackage'.
+ * <p>
+ * The 1k listing is checked in as listing-1000.json.gz, the bigger ones are generated by SyntheticListing.json(size, 42) since they'd take
+ * tens of megabytes. Every listing is checked against its recorded digest, so results stay comparable across commits even if the generator changes.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class HotPathBenchmark {
+    private static final long SEED = 42;
+    private static final int QUERIES = 1024;
+    private static final Map<Integer, String> DIGESTS = Map.of(
+            1000, "d8a291825d435cbcd496ca10db8646dd36fb0fbed5bfc49a76605a95247c5ed2",
+            10000, "aa900432d10649189a0539bc0fd3ae31096d1147ab81ba5439ef4e2a46cde2ff",
+            100000, "bde26df52a378830da2df166ba9e608f4b3dfb22f5b5a744a9b1ad1bb3e074d3");
+
+    /**
+     * The amount of packages in the listing.
+     */
+    @Param({"1000", "10000", "100000"})
+    public int packages;
+    /**
+     * The kind of query, see SyntheticListing.queries.
+     */
+    @Param({"exact", "normalized", "typo", "miss"})
+    public String kind;
+
+    private String[] queries;
+    private String[] lowered;
+    private String[] names;
+    private int next;
+
+    /**
+     * Loads the listing, publishes it as the index and generates the queries.
+     * Each query is paired with the lowercase name of the package it resolves to, or of some package for a miss, for calculateDistance.
+     *
+     * @throws IOException If the checked in listing can't be read.
+     */
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        byte[] json = listing(packages);
+        List<ModPackage> listing = ListingParser.parse(new ByteArrayInputStream(json));
+        FixerBot.publish(new ModIndex(listing));
+
+        queries = SyntheticListing.queries(listing, kind, QUERIES, 7).toArray(String[]::new);
+        lowered = new String[QUERIES];
+        names = new String[QUERIES];
+        for (int i = 0; i < QUERIES; i++) {
+            lowered[i] = queries[i].toLowerCase();
+            ModResolver.Resolution r = ModResolver.resolve(queries[i]);
+            names[i] = (r.found() ? r.pkg() : listing.get(i % listing.size())).name().toLowerCase();
+        }
+    }
+
+    private static byte[] listing(int packages) throws IOException {
+        byte[] json;
+        if (packages == 1000) {
+            try (InputStream in = new GZIPInputStream(HotPathBenchmark.class.getResourceAsStream("listing-1000.json.gz"))) {
+                json = in.readAllBytes();
+            }
+        } else {
+            json = SyntheticListing.json(packages, SEED).getBytes(StandardCharsets.UTF_8);
+        }
+        String digest;
+        try {
+            digest = HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(json));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        if (!digest.equals(DIGESTS.get(packages))) throw new IllegalStateException("The listing of " + packages + " packages isn't the recorded one");
+        return json;
+    }
+
+    private int nextQuery() {
+        return next++ & (QUERIES - 1);
+    }
+
+    /**
+     * @return The distance between a lowercase query and the name it resolves to.
+     */
+    @Benchmark
+    public int calculateDistance() {
+        int i = nextQuery();
+        return BotUtils.calculateDistance(lowered[i], names[i], Integer.MAX_VALUE);
+    }
+
+    /**
+     * @return The closest package to a query.
+     */
+    @Benchmark
+    public BotUtils.ClosestPackage getClosestPackage() {
+        return BotUtils.getClosestPackage(queries[nextQuery()]);
+    }
+
+    /**
+     * @return The package a query finds by title.
+     */
+    @Benchmark
+    public ModPackage findByTitle() {
+        return BotUtils.findByTitle(queries[nextQuery()]);
+    }
+
+    /**
+     * @return Whether a query names a mod.
+     */
+    @Benchmark
+    public boolean exists() {
+        return FixerBot.exists(queries[nextQuery()]);
+    }
+
+    /**
+     * @return The cleaned query.
+     */
+    @Benchmark
+    public String clean() {
+        return FixerBot.clean(queries[nextQuery()]);
+    }
+
+    /**
+     * @return The embed answering a query, built without QUERY_CACHE.
+     */
+    @Benchmark
+    public MessageEmbed createEmbedFromModName() {
+        return FixerBot.createEmbedFromModName(queries[nextQuery()]);
+    }
+}
@@ -0,0 +1,119 @@
+package amber.io;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the Levenshtein engines against the textbook DP BotUtils.calculateDistance used to be.
+ * Run with gradle jmh -Pjmh.includes=LevenshteinBenchmark, the gc profiler reports the allocation rate of each.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LevenshteinBenchmark {
+    /**
+     * The pair of strings to compare: a query against a mod name with a typo, against an unrelated name, and two long descriptions.
+     */
+    @Param({"typo", "miss", "long"})
+    public String pair;
+    /**
+     * The limit passed in, 2 being the usual bestDist once getClosestPackage has seen a close candidate, and 1 where bounded switches to banded.
+     */
+    @Param({"1", "2", "2147483647"})
+    public int max;
+
+    private String first;
+    private String second;
+
+    /**
+     * Picks the strings for the pair.
+     */
+    @Setup
+    public void setup() {
+        switch (pair) {
+            case "typo" -> {
+                first = "silksong speedrun tools";
+                second = "silksong_speedrn_tool";
+            }
+            case "miss" -> {
+                first = "better map markers";
+                second = "debug_menu_hornet";
+            }
+            default -> {
+                first = "Adds a fully customisable HUD with damage numbers, boss health bars and a practice timer for every area.";
+                second = "Adds a customizable HUD with damage numbers, boss health bars and practise timers for each area of the map.";
+            }
+        }
+    }
+
+    /**
+     * @return The distance from the old textbook DP.
+     */
+    @Benchmark
+    public int textbook() {
+        return textbook(first, second, max);
+    }
+
+    /**
+     * @return The distance from Levenshtein.distance.
+     */
+    @Benchmark
+    public int myers() {
+        return Levenshtein.distance(first, second, max);
+    }
+
+    /**
+     * @return The distance from Levenshtein.banded.
+     */
+    @Benchmark
+    public int banded() {
+        return Levenshtein.banded(first, second, max);
+    }
+
+    /**
+     * @return The distance from Levenshtein.bounded.
+     */
+    @Benchmark
+    public int bounded() {
+        return Levenshtein.bounded(first, second, max);
+    }
+
+    /**
+     * The implementation of BotUtils.calculateDistance before it went bit-parallel, kept as the baseline.
+     */
+    static int textbook(String first, String second, int max) {
+        int lenA = first.length();
+        int lenB = second.length();
+
+        if (lenA < lenB) return textbook(second, first, max);
+        if (lenB == 0) return Math.min(lenA, max + 1);
+
+        int[] prev = new int[lenB + 1];
+        int[] curr = new int[lenB + 1];
+
+        for (int j = 0; j <= lenB; j++) prev[j] = j;
+
+        for (int i = 1; i <= lenA; i++) {
+            curr[0] = i;
+            for (int j = 1; j <= lenB; j++) {
+                int cost = (first.charAt(i - 1) == second.charAt(j - 1)) ? 0 : 1;
+                curr[j] = Math.min(
+                        Math.min(curr[j - 1] + 1, prev[j] + 1),
+                        prev[j - 1] + cost
+                );
+            }
+
+            if (Arrays.stream(curr).min().orElse(max + 1) > max) return max + 1;
+            int[] tmp = prev;
+            prev = curr;
+            curr = tmp;
+        }
+
+        return prev[lenB];
+    }
+}
@@ -0,0 +1,129 @@
+package amber.io;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Measures ModFetcher.getAllMods against a ThunderstoreStub on this machine: a full refresh, one where the index answers 304,
+ * and the download, decompress and parse steps of a full refresh on their own.
+ * Run with gradle jmh -Pjmh.includes=RefreshBenchmark.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class RefreshBenchmark {
+    /**
+     * The amount of packages in the listing, served in chunks of 1000.
+     */
+    @Param({"1000", "10000"})
+    public int packages;
+    /**
+     * How long the stub waits before every response.
+     */
+    @Param({"0", "20"})
+    public int latencyMillis;
+
+    private ThunderstoreStub stub;
+    private Path snapshot;
+
+    /**
+     * Starts the stub, points ModFetcher at it and refreshes once, so the index validators are known.
+     *
+     * @throws IOException If the stub can't be started.
+     */
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        // Keeps the snapshot every full refresh writes out of the working directory. Read once, so it has to be set before ModSnapshot is used.
+        snapshot = Files.createTempFile("fixerbot", ".snapshot");
+        System.setProperty("fixerbot.snapshot", snapshot.toString());
+        stub = ThunderstoreStub.synthetic(0, packages, 1000, 42).latency(latencyMillis);
+        ModFetcher.Url = stub.url();
+        if (ModFetcher.getAllMods(true).size() != packages) throw new IllegalStateException("The stub's listing didn't load");
+    }
+
+    /**
+     * Stops the stub.
+     *
+     * @throws IOException If the snapshot can't be deleted.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        stub.close();
+        Files.deleteIfExists(snapshot);
+    }
+
+    /**
+     * @return The index of a refresh that downloads, parses and indexes everything.
+     */
+    @Benchmark
+    public ModIndex full() {
+        return ModFetcher.getAllMods(true);
+    }
+
+    /**
+     * @return The previous index, from a refresh the index answers with 304.
+     */
+    @Benchmark
+    public ModIndex notModified() {
+        return ModFetcher.getAllMods(false);
+    }
+
+    /**
+     * @return The amount of bytes of every chunk, downloaded one after another.
+     * @throws IOException If a chunk can't be downloaded.
+     */
+    @Benchmark
+    public long download() throws IOException {
+        long bytes = 0;
+        try (ModFetcher.Response index = ModFetcher.request(ModFetcher.Url, ModFetcher.Validators.NONE)) {
+            for (String url : ModFetcher.readChunkUrls(index.body())) {
+                try (ModFetcher.Response chunk = ModFetcher.request(url, ModFetcher.Validators.NONE)) {
+                    bytes += chunk.body().readAllBytes().length;
+                }
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * @return The amount of bytes of every chunk, decompressed.
+     * @throws IOException If a chunk isn't valid gzip.
+     */
+    @Benchmark
+    public long decompress() throws IOException {
+        long bytes = 0;
+        for (byte[] chunk : stub.chunks()) {
+            try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(chunk))) {
+                bytes += in.readAllBytes().length;
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * @return The amount of packages in every chunk, decompressed and parsed.
+     * @throws IOException If a chunk can't be parsed.
+     */
+    @Benchmark
+    public int parse() throws IOException {
+        int count = 0;
+        for (byte[] chunk : stub.chunks()) {
+            try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(chunk))) {
+                List<ModPackage> parsed = ListingParser.parse(in);
+                count += parsed.size();
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,154 @@
+package amber.io;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.ThreadMXBean;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Compares how message handling holds up under load between the ways FixerBot can run it:
+ * cached (the old way: a new thread per name from Executors.newCachedThreadPool, and a send per name), bounded (BotExecutor with platform workers
+ * and a task per message that resolves its names one after another) and virtual (BotExecutor with virtual workers and a task per message
+ * that resolves each name on its own virtual thread). Both executor modes send one reply per batch of FixerBot.batches.
+ * <p>
+ * Messages with 1 to 4 names arrive at a fixed rate from 40 guilds. Names are resolved against a synthetic listing and every send
+ * blocks for a while, standing in for the REST call. Reports the latency from a message arriving to its last name being handled,
+ * the peak heap and the peak thread count. Every mode runs in its own JVM so they can't skew each other, and both executor modes get the same
+ * amount of workers, fixerbot.workers if it's set and eight per processor otherwise, so only the kind of thread differs between them.
+ * <p>
+ * Usage: LoadTest [all|cached|bounded|virtual] [messages] [messages per second] [blocking millis per send] [packages]
+ */
+public final class LoadTest {
+    private static final String[] MODES = {"cached", "bounded", "virtual"};
+
+    private LoadTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        String mode = args.length > 0 ? args[0] : "all";
+        int messages = args.length > 1 ? Integer.parseInt(args[1]) : 20000;
+        int rate = args.length > 2 ? Integer.parseInt(args[2]) : 2000;
+        int blockMillis = args.length > 3 ? Integer.parseInt(args[3]) : 5;
+        int packages = args.length > 4 ? Integer.parseInt(args[4]) : 5000;
+
+        if (!mode.equals("all")) {
+            run(mode, messages, rate, blockMillis, packages);
+            return;
+        }
+        int workers = Integer.getInteger("fixerbot.workers", Runtime.getRuntime().availableProcessors() * 8);
+        System.out.printf("%d messages at %d/s, %d ms blocking per send, %d packages%n", messages, rate, blockMillis, packages);
+        System.out.printf("%-8s %8s %9s %8s %8s %8s %8s %10s %8s%n", "mode", "workers", "handled", "lost", "p50 ms", "p99 ms", "max ms", "heap MB", "threads");
+        for (String m : MODES) {
+            List<String> command = new ArrayList<>();
+            command.add(ProcessHandle.current().info().command().orElse("java"));
+            command.add("-Xmx512m");
+            if (!m.equals("cached")) command.add("-Dfixerbot.workers=" + workers);
+            if (m.equals("virtual")) {
+                command.add("-Dfixerbot.executor=virtual");
+                command.add("-Dfixerbot.dispatch=virtual");
+            }
+            command.addAll(List.of("-cp", System.getProperty("java.class.path"), LoadTest.class.getName(),
+                    m, String.valueOf(messages), String.valueOf(rate), String.valueOf(blockMillis), String.valueOf(packages)));
+            Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+            String last = null;
+            for (String line : process.inputReader().lines().toList()) if (line.startsWith("RESULT ")) last = line.substring(7);
+            process.waitFor();
+            System.out.println(last != null ? last : String.format("%-8s failed", m));
+        }
+    }
+
+    private static void run(String mode, int messages, int rate, int blockMillis, int packages) throws Exception {
+        List<ModPackage> listing = SyntheticListing.packages(packages, 42);
+        FixerBot.publish(new ModIndex(listing));
+        List<String> queries = SyntheticListing.queries(listing, 4096, 7);
+        Random r = new Random(1);
+
+        ExecutorService cached = mode.equals("cached") ? Executors.newCachedThreadPool() : null;
+        long[] latencies = new long[messages];
+        AtomicInteger handled = new AtomicInteger();
+        AtomicLong peakHeap = new AtomicLong();
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        System.gc();
+        threads.resetPeakThreadCount();
+        Thread sampler = Thread.ofPlatform().daemon().start(() -> {
+            while (true) {
+                peakHeap.accumulateAndGet(memory.getHeapMemoryUsage().getUsed(), Math::max);
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(5));
+            }
+        });
+
+        int totalNames = 0;
+        long start = System.nanoTime();
+        long interval = TimeUnit.SECONDS.toNanos(1) / rate;
+        for (int i = 0; i < messages; i++) {
+            long arrival = start + i * interval;
+            long wait = arrival - System.nanoTime();
+            if (wait > 0) LockSupport.parkNanos(wait);
+
+            List<String> names = new ArrayList<>();
+            int count = 1 + r.nextInt(4);
+            for (int k = 0; k < count; k++) names.add(queries.get(r.nextInt(queries.size())));
+            totalNames += count;
+            int message = i;
+            Runnable done = () -> {
+                latencies[message] = System.nanoTime() - arrival;
+                handled.incrementAndGet();
+            };
+
+            if (cached != null) {
+                AtomicInteger remaining = new AtomicInteger(count);
+                for (String name : names) {
+                    cached.submit(() -> {
+                        FixerBot.respond(name);
+                        send(blockMillis);
+                        if (remaining.decrementAndGet() == 0) done.run();
+                    });
+                }
+            } else {
+                FixerBot.WORKER.submit(i % 40, () -> {
+                    for (int b = FixerBot.batches(FixerBot.respondAll(names)).size(); b > 0; b--) send(blockMillis);
+                    done.run();
+                });
+            }
+        }
+
+        // Names turned away by a full queue never finish their message, so for the executors wait until nothing is queued or running.
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(60);
+        int idle = 0;
+        while (handled.get() < messages && idle < 3 && System.nanoTime() < deadline) {
+            BotExecutor.Metrics m = FixerBot.WORKER.metrics();
+            idle = cached == null && m.queueDepth() == 0 && m.activeWorkers() == 0 ? idle + 1 : 0;
+            Thread.sleep(10);
+        }
+        sampler.interrupt();
+
+        long[] done = Arrays.stream(latencies).filter(l -> l > 0).sorted().toArray();
+        System.out.printf("RESULT %-8s %8s %9d %8d %8.1f %8.1f %8.1f %10.1f %8d%n", mode, cached != null ? "-" : String.valueOf(FixerBot.WORKER.workers()),
+                done.length, messages - done.length,
+                percentile(done, 0.50), percentile(done, 0.99), percentile(done, 1.0),
+                peakHeap.get() / (1024.0 * 1024.0), threads.getPeakThreadCount());
+        System.out.printf("names=%d rejected=%d dropped=%d%n", totalNames, FixerBot.WORKER.metrics().rejected(), FixerBot.WORKER.metrics().dropped());
+        System.exit(0);
+    }
+
+    private static void send(int blockMillis) {
+        try {
+            Thread.sleep(blockMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        if (sorted.length == 0) return Double.NaN;
+        int i = (int) Math.ceil(p * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, i))] / 1_000_000.0;
+    }
+}
@@ -0,0 +1,354 @@
+package amber.io;
+
+import net.dv8tion.jda.api.entities.Guild;
+import net.dv8tion.jda.api.entities.Message;
+import net.dv8tion.jda.api.entities.MessageEmbed;
+import net.dv8tion.jda.api.entities.channel.ChannelType;
+import net.dv8tion.jda.api.entities.channel.unions.GuildMessageChannelUnion;
+import net.dv8tion.jda.api.entities.channel.unions.MessageChannelUnion;
+import net.dv8tion.jda.api.events.message.MessageReceivedEvent;
+import net.dv8tion.jda.api.requests.restaction.MessageCreateAction;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+
+/**
+ * Replays a stream of messages into FixerBot.MessageListener.onMessageReceived without Discord, the way the gateway would deliver them,
+ * so concurrency and caching changes can be checked end to end. Events, messages, guilds and channels are stubs, and a channel's
+ * sendMessageEmbeds records the embeds and acknowledges them after the given delay from a separate thread, standing in for the REST call.
+ * <p>
+ * The stream is either synthetic (messages at a fixed rate from 40 guilds with 3 channels each, every message carrying a Poisson distributed
+ * amount of {{...}} tags around the given mean, so a mean below 1 also gives plain chatter) or read from a recorded file. A recorded file
+ * has a line per message: milliseconds since the start, guild id, channel id and the raw content, separated by tabs. Lines starting with # are skipped.
+ * <p>
+ * Reports the latency of every tag from its message arriving to the send carrying its answer being acknowledged, the throughput,
+ * and the heap, thread count, executor queue and pending sends over time. A tag whose answer was left out as a repeat of one sent
+ * to the channel shortly before counts as suppressed instead. When run with -Dfixerbot.trace.sample, the sampled traces are written to
+ * Tracer.PATH at the end.
+ * <p>
+ * Usage:
+ * <br>ReplayHarness synthetic [messages] [messages per second] [tags per message] [send millis] [packages]
+ * <br>ReplayHarness record [file] [messages] [messages per second] [tags per message] [packages]
+ * <br>ReplayHarness replay [file] [speed] [send millis] [packages]
+ */
+public final class ReplayHarness {
+    private static final int GUILDS = 40;
+    private static final int CHANNELS_PER_GUILD = 3;
+    private static final long DUPLICATE_NANOS = TimeUnit.MILLISECONDS.toNanos(Long.getLong("fixerbot.send.duplicate", 5000));
+    private static final String[] CHATTER = {"does anyone know", "is there a mod for", "try", "what about", "this one", "thanks", "also", "lol"};
+
+    private final Map<Long, List<Send>> sends = new ConcurrentHashMap<>();
+    private final Map<Long, MessageChannelUnion> channels = new ConcurrentHashMap<>();
+    private final Map<Long, Guild> guilds = new ConcurrentHashMap<>();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final ScheduledExecutorService rest;
+    private final long sendMillis;
+
+    private ReplayHarness(long sendMillis) {
+        this.sendMillis = sendMillis;
+        this.rest = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().name("replay-rest").daemon().factory());
+    }
+
+    /**
+     * A message of a stream.
+     *
+     * @param at      Milliseconds since the start of the stream.
+     * @param guild   The id of the guild.
+     * @param channel The id of the channel.
+     * @param content The raw content.
+     */
+    public record Line(long at, long guild, long channel, String content) {
+        /**
+         * @return The line the way recorded files have it.
+         */
+        public String format() {
+            return at + "\t" + guild + "\t" + channel + "\t" + content.replace('\t', ' ').replace('\n', ' ');
+        }
+
+        /**
+         * @param s A line of a recorded file.
+         * @return The line.
+         */
+        public static Line parse(String s) {
+            String[] parts = s.split("\t", 4);
+            return new Line(Long.parseLong(parts[0]), Long.parseLong(parts[1]), Long.parseLong(parts[2]), parts.length > 3 ? parts[3] : "");
+        }
+    }
+
+    private record Send(long started, long[] acked, List<MessageEmbed> embeds) {
+    }
+
+    private record Tag(long channel, long arrival, String name) {
+    }
+
+    private record Sample(long millis, long heap, int threads, int queued, int pendingSends) {
+    }
+
+    public static void main(String[] args) throws Exception {
+        String mode = args.length > 0 ? args[0] : "synthetic";
+        switch (mode) {
+            case "synthetic" -> {
+                int messages = intArg(args, 1, 20000);
+                int rate = intArg(args, 2, 500);
+                double density = args.length > 3 ? Double.parseDouble(args[3]) : 1.5;
+                int packages = intArg(args, 5, 5000);
+                List<ModPackage> listing = SyntheticListing.packages(packages, 42);
+                new ReplayHarness(intArg(args, 4, 50)).run(listing, synthetic(listing, messages, rate, density, 3), 1.0);
+            }
+            case "record" -> {
+                Path file = Path.of(args.length > 1 ? args[1] : "replay.tsv");
+                int messages = intArg(args, 2, 20000);
+                int rate = intArg(args, 3, 500);
+                double density = args.length > 4 ? Double.parseDouble(args[4]) : 1.5;
+                List<ModPackage> listing = SyntheticListing.packages(intArg(args, 5, 5000), 42);
+                List<String> out = new ArrayList<>();
+                out.add("# " + messages + " messages at " + rate + "/s, " + density + " tags per message");
+                for (Line line : synthetic(listing, messages, rate, density, 3)) out.add(line.format());
+                Files.write(file, out);
+                System.out.printf("Recorded %d messages to %s%n", messages, file);
+            }
+            case "replay" -> {
+                Path file = Path.of(args.length > 1 ? args[1] : "replay.tsv");
+                double speed = args.length > 2 ? Double.parseDouble(args[2]) : 1.0;
+                List<ModPackage> listing = SyntheticListing.packages(intArg(args, 4, 5000), 42);
+                new ReplayHarness(intArg(args, 3, 50)).run(listing, read(file), speed);
+            }
+            default -> throw new IllegalArgumentException("Unknown mode: " + mode);
+        }
+        if (Tracer.ENABLED) System.out.printf("Wrote %d traces to %s%n", Tracer.dump(), Tracer.PATH);
+        System.exit(0);
+    }
+
+    private static int intArg(String[] args, int i, int fallback) {
+        return args.length > i ? Integer.parseInt(args[i]) : fallback;
+    }
+
+    /**
+     * Generates a synthetic stream, the same for the same arguments.
+     *
+     * @param listing  The packages to take tags from, see SyntheticListing.queries.
+     * @param messages The amount of messages.
+     * @param rate     Messages per second.
+     * @param density  The mean amount of tags per message.
+     * @param seed     The seed.
+     * @return The stream.
+     */
+    public static List<Line> synthetic(List<ModPackage> listing, int messages, int rate, double density, long seed) {
+        Random r = new Random(seed);
+        List<String> queries = SyntheticListing.queries(listing, 4096, seed);
+        List<Line> lines = new ArrayList<>(messages);
+        for (int i = 0; i < messages; i++) {
+            StringBuilder content = new StringBuilder(CHATTER[r.nextInt(CHATTER.length)]);
+            for (int k = poisson(density, r); k > 0; k--) {
+                content.append(' ').append("{{").append(queries.get(r.nextInt(queries.size()))).append("}}");
+                if (r.nextBoolean()) content.append(' ').append(CHATTER[r.nextInt(CHATTER.length)]);
+            }
+            int guild = r.nextInt(GUILDS);
+            long channel = guild * 100L + r.nextInt(CHANNELS_PER_GUILD);
+            lines.add(new Line(i * 1000L / rate, 1000 + guild, 100_000 + channel, content.toString()));
+        }
+        return lines;
+    }
+
+    private static int poisson(double mean, Random r) {
+        double limit = Math.exp(-mean);
+        double p = r.nextDouble();
+        int k = 0;
+        // More than 10 tags would only be split across messages the same way.
+        while (p > limit && k < 10) {
+            p *= r.nextDouble();
+            k++;
+        }
+        return k;
+    }
+
+    private static List<Line> read(Path file) throws IOException {
+        List<Line> lines = new ArrayList<>();
+        for (String s : Files.readAllLines(file)) if (!s.isBlank() && !s.startsWith("#")) lines.add(Line.parse(s));
+        lines.sort(Comparator.comparingLong(Line::at));
+        return lines;
+    }
+
+    private void run(List<ModPackage> listing, List<Line> stream, double speed) throws InterruptedException {
+        FixerBot.publish(new ModIndex(listing));
+        FixerBot.MessageListener listener = new FixerBot.MessageListener();
+        List<Tag> tags = new ArrayList<>();
+        List<Sample> samples = Collections.synchronizedList(new ArrayList<>());
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        System.gc();
+
+        long start = System.nanoTime();
+        Thread sampler = Thread.ofPlatform().daemon().start(() -> {
+            try {
+                while (true) {
+                    BotExecutor.Metrics m = FixerBot.WORKER.metrics();
+                    samples.add(new Sample((System.nanoTime() - start) / 1_000_000, memory.getHeapMemoryUsage().getUsed(),
+                            threads.getThreadCount(), m.queueDepth(), FixerBot.SENDER.pending()));
+                    Thread.sleep(1000);
+                }
+            } catch (InterruptedException ignored) {
+            }
+        });
+
+        for (int i = 0; i < stream.size(); i++) {
+            Line line = stream.get(i);
+            long arrival = start + (long) (line.at() * 1_000_000 / speed);
+            long wait = arrival - System.nanoTime();
+            if (wait > 0) TimeUnit.NANOSECONDS.sleep(wait);
+
+            long now = System.nanoTime();
+            Matcher matcher = FixerBot.PATTERN.matcher(line.content());
+            while (matcher.find()) tags.add(new Tag(line.channel(), now, matcher.group(1).trim()));
+            listener.onMessageReceived(new MessageReceivedEvent(null, i, message(i, line)));
+        }
+        long fed = System.nanoTime();
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(120);
+        int idle = 0;
+        while (idle < 3 && System.nanoTime() < deadline) {
+            BotExecutor.Metrics m = FixerBot.WORKER.metrics();
+            idle = m.queueDepth() == 0 && m.activeWorkers() == 0 && FixerBot.SENDER.pending() == 0 && inFlight.get() == 0 ? idle + 1 : 0;
+            Thread.sleep(50);
+        }
+        long end = System.nanoTime();
+        sampler.interrupt();
+
+        report(stream.size(), tags, samples, start, fed, end);
+    }
+
+    private void report(int messages, List<Tag> tags, List<Sample> samples, long start, long fed, long end) {
+        long[] latencies = new long[tags.size()];
+        int answered = 0, suppressed = 0;
+        for (Tag tag : tags) {
+            // The answer is what a tag resolves to now, which is what it resolved to during the run as the index didn't change.
+            long acked = ackOf(tag, FixerBot.respond(tag.name()));
+            if (acked < 0) suppressed++;
+            else latencies[answered++] = acked - tag.arrival();
+        }
+        long[] sorted = Arrays.copyOf(latencies, answered);
+        Arrays.sort(sorted);
+        int calls = sends.values().stream().mapToInt(List::size).sum();
+        double seconds = (end - start) / 1e9;
+
+        System.out.printf("%d messages, %d tags in %.1f s (fed in %.1f s), %d sends%n", messages, tags.size(), seconds, (fed - start) / 1e9, calls);
+        System.out.printf("answered=%d suppressed=%d rejected=%d dropped=%d%n", answered, suppressed,
+                FixerBot.WORKER.metrics().rejected(), FixerBot.WORKER.metrics().dropped());
+        System.out.printf("throughput: %.1f messages/s, %.1f tags/s%n", messages / seconds, answered / seconds);
+        System.out.printf("tag latency ms: p50=%.1f p90=%.1f p99=%.1f max=%.1f%n",
+                percentile(sorted, 0.50), percentile(sorted, 0.90), percentile(sorted, 0.99), percentile(sorted, 1.0));
+        System.out.printf("%8s %10s %8s %8s %8s%n", "t ms", "heap MB", "threads", "queued", "unsent");
+        synchronized (samples) {
+            for (Sample s : samples) {
+                System.out.printf("%8d %10.1f %8d %8d %8d%n", s.millis(), s.heap() / (1024.0 * 1024.0), s.threads(), s.queued(), s.pendingSends());
+            }
+        }
+    }
+
+    private long ackOf(Tag tag, MessageEmbed answer) {
+        List<Send> channelSends = sends.getOrDefault(tag.channel(), List.of());
+        synchronized (channelSends) {
+            for (Send send : channelSends) {
+                // MessageEmbed has equals but not hashCode.
+                boolean carries = false;
+                for (MessageEmbed embed : send.embeds()) carries |= embed.equals(answer);
+                if (!carries) continue;
+                // Sent to the channel within the duplicate window before the tag arrived, so SendScheduler left the tag's answer out.
+                if (send.started() < tag.arrival()) {
+                    if (send.started() >= tag.arrival() - DUPLICATE_NANOS) return -1;
+                    continue;
+                }
+                return send.acked()[0];
+            }
+        }
+        return -1;
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        if (sorted.length == 0) return Double.NaN;
+        int i = (int) Math.ceil(p * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, i))] / 1_000_000.0;
+    }
+
+    private Message message(long id, Line line) {
+        MessageChannelUnion channel = channels.computeIfAbsent(line.channel(), c -> channel(c, guilds.computeIfAbsent(line.guild(), this::guild)));
+        return stub(Message.class, (proxy, method, args) -> switch (method.getName()) {
+            case "getIdLong" -> id;
+            case "getContentRaw" -> line.content();
+            case "getChannel" -> channel;
+            case "getGuild" -> guilds.get(line.guild());
+            case "isFromGuild" -> true;
+            default -> fallback(proxy, method, args);
+        });
+    }
+
+    private Guild guild(long id) {
+        return stub(Guild.class, (proxy, method, args) -> method.getName().equals("getIdLong") ? id : fallback(proxy, method, args));
+    }
+
+    @SuppressWarnings("unchecked")
+    private MessageChannelUnion channel(long id, Guild guild) {
+        List<Send> channelSends = sends.computeIfAbsent(id, c -> Collections.synchronizedList(new ArrayList<>()));
+        return (MessageChannelUnion) Proxy.newProxyInstance(ReplayHarness.class.getClassLoader(),
+                new Class<?>[]{MessageChannelUnion.class, GuildMessageChannelUnion.class}, (proxy, method, args) -> switch (method.getName()) {
+                    case "getIdLong" -> id;
+                    case "getType" -> ChannelType.TEXT;
+                    case "getGuild" -> guild;
+                    case "sendMessageEmbeds" -> {
+                        List<MessageEmbed> embeds = args[0] instanceof Collection<?> c
+                                ? new ArrayList<>((Collection<MessageEmbed>) c)
+                                : new ArrayList<>(List.of((MessageEmbed[]) args[0]));
+                        Send send = new Send(System.nanoTime(), new long[1], embeds);
+                        channelSends.add(send);
+                        yield action(send);
+                    }
+                    default -> fallback(proxy, method, args);
+                });
+    }
+
+    @SuppressWarnings("unchecked")
+    private MessageCreateAction action(Send send) {
+        return stub(MessageCreateAction.class, (proxy, method, args) -> {
+            if (!method.getName().equals("queue")) return fallback(proxy, method, args);
+            inFlight.incrementAndGet();
+            rest.schedule(() -> {
+                send.acked()[0] = System.nanoTime();
+                inFlight.decrementAndGet();
+                if (args != null && args.length > 0 && args[0] != null) ((Consumer<Object>) args[0]).accept(null);
+            }, sendMillis, TimeUnit.MILLISECONDS);
+            return null;
+        });
+    }
+
+    private static <T> T stub(Class<T> type, InvocationHandler handler) {
+        return type.cast(Proxy.newProxyInstance(ReplayHarness.class.getClassLoader(), new Class<?>[]{type}, handler));
+    }
+
+    private static Object fallback(Object proxy, Method method, Object[] args) {
+        Class<?> returns = method.getReturnType();
+        if (method.getName().equals("equals")) return proxy == args[0];
+        if (method.getName().equals("hashCode")) return System.identityHashCode(proxy);
+        if (returns == boolean.class) return false;
+        if (returns == int.class) return 0;
+        if (returns == long.class) return 0L;
+        if (returns == String.class) return "stub";
+        // Builder style calls like mentionRepliedUser go on with the same action.
+        if (returns.isInstance(proxy)) return proxy;
+        return null;
+    }
+}
@@ -0,0 +1,198 @@
+package amber.io;
+
+import com.google.gson.stream.JsonWriter;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates a deterministic Thunderstore-like package listing and {{mod}} queries against it, so load tests and benchmarks
+ * can run at any size without network access. The same size and seed always give the same listing.
+ */
+public final class SyntheticListing {
+    private static final String[] WORDS = {"better", "map", "silk", "song", "hornet", "speed", "run", "tools", "fix", "quality", "life", "ui",
+            "debug", "mod", "menu", "skin", "texture", "pack", "core", "lib", "api", "save", "editor", "camera", "zoom", "practice", "boss",
+            "rush", "hard", "mode", "easy", "lang", "journal", "tracker", "timer", "hud", "custom", "knight", "needle", "crest", "tool",
+            "bench", "rosary", "shell", "thread", "hollow", "extra", "damage", "numbers"};
+
+    private SyntheticListing() {
+    }
+
+    /**
+     * Generates a listing in the json format of the package-listing chunks.
+     *
+     * @param packages The amount of packages.
+     * @param seed     The seed.
+     * @return The listing json.
+     */
+    public static String json(int packages, long seed) {
+        return chunks(packages, Math.max(1, packages), seed).get(0);
+    }
+
+    /**
+     * Generates a listing split into chunks the way the package listing index serves it. Chunks of the whole listing in one
+     * are the same as json(packages, seed).
+     *
+     * @param packages The amount of packages.
+     * @param perChunk The most packages in a chunk.
+     * @param seed     The seed.
+     * @return The json of every chunk, in order.
+     */
+    public static List<String> chunks(int packages, int perChunk, long seed) {
+        Random r = new Random(seed);
+        List<String> chunks = new ArrayList<>();
+        int i = 0;
+        do {
+            StringWriter out = new StringWriter();
+            try (JsonWriter w = new JsonWriter(out)) {
+                w.beginArray();
+                for (int end = Math.min(packages, i + perChunk); i < end; i++) writePackage(w, r, i);
+                w.endArray();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            chunks.add(out.toString());
+        } while (i < packages);
+        return chunks;
+    }
+
+    /**
+     * Generates a listing and parses it the way a refresh does.
+     *
+     * @param packages The amount of packages.
+     * @param seed     The seed.
+     * @return The packages.
+     */
+    public static List<ModPackage> packages(int packages, long seed) {
+        try {
+            return ListingParser.parse(new ByteArrayInputStream(json(packages, seed).getBytes(StandardCharsets.UTF_8)));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Generates queries the way people type them: exact names, names with spaces or in lowercase, single name tokens,
+     * names with a typo or two, and names nothing is close to.
+     *
+     * @param packages The packages to take names from.
+     * @param count    The amount of queries.
+     * @param seed     The seed.
+     * @return The queries, each matching {{[\w ]+}}.
+     */
+    public static List<String> queries(List<ModPackage> packages, int count, long seed) {
+        Random r = new Random(seed);
+        List<String> queries = new ArrayList<>(count);
+        while (queries.size() < count) {
+            String name = packages.get(r.nextInt(packages.size())).name();
+            String q = switch (r.nextInt(8)) {
+                case 0, 1 -> name;
+                case 2 -> name.replace('_', ' ');
+                case 3 -> name.toLowerCase();
+                case 4 -> {
+                    String[] tokens = name.split("_");
+                    yield tokens[r.nextInt(tokens.length)];
+                }
+                case 5 -> typo(name, r);
+                case 6 -> typo(typo(name, r), r);
+                default -> WORDS[r.nextInt(WORDS.length)] + "zq" + r.nextInt(1000);
+            };
+            q = q.trim();
+            if (!q.isEmpty()) queries.add(q);
+        }
+        return queries;
+    }
+
+    /**
+     * Generates queries of one kind, for benchmarks that measure each kind on its own: exact (a name as listed), normalized
+     * (a name with spaces and in lowercase), typo (a name with one typo) or miss (a name nothing is close to).
+     *
+     * @param packages The packages to take names from.
+     * @param kind     The kind of query.
+     * @param count    The amount of queries.
+     * @param seed     The seed.
+     * @return The queries, each matching {{[\w ]+}}.
+     */
+    public static List<String> queries(List<ModPackage> packages, String kind, int count, long seed) {
+        Random r = new Random(seed);
+        List<String> queries = new ArrayList<>(count);
+        while (queries.size() < count) {
+            String name = packages.get(r.nextInt(packages.size())).name();
+            String q = switch (kind) {
+                case "exact" -> name;
+                case "normalized" -> name.replace('_', ' ').toLowerCase();
+                case "typo" -> typo(name, r);
+                case "miss" -> WORDS[r.nextInt(WORDS.length)] + "zq" + r.nextInt(1000);
+                default -> throw new IllegalArgumentException("Unknown kind of query: " + kind);
+            };
+            q = q.trim();
+            if (!q.isEmpty()) queries.add(q);
+        }
+        return queries;
+    }
+
+    private static String typo(String s, Random r) {
+        if (s.length() < 2) return s;
+        int k = r.nextInt(s.length());
+        char c = (char) ('a' + r.nextInt(26));
+        return switch (r.nextInt(3)) {
+            case 0 -> s.substring(0, k) + s.substring(k + 1);
+            case 1 -> s.substring(0, k) + c + s.substring(k);
+            default -> s.substring(0, k) + c + s.substring(k + 1);
+        };
+    }
+
+    private static void writePackage(JsonWriter w, Random r, int i) throws IOException {
+        StringBuilder name = new StringBuilder();
+        int words = 1 + r.nextInt(3);
+        for (int k = 0; k < words; k++) {
+            if (k > 0 && r.nextInt(4) != 0) name.append('_');
+            String word = WORDS[r.nextInt(WORDS.length)];
+            name.append(r.nextBoolean() ? Character.toUpperCase(word.charAt(0)) + word.substring(1) : word);
+        }
+        if (r.nextInt(10) == 0) name.append(r.nextInt(100));
+        String owner = WORDS[r.nextInt(WORDS.length)] + i;
+        String fullName = owner + "-" + name;
+
+        w.beginObject();
+        w.name("name").value(name.toString());
+        w.name("full_name").value(fullName);
+        w.name("owner").value(owner);
+        w.name("package_url").value("https://thunderstore.io/c/hollow-knight-silksong/p/" + owner + "/" + name + "/");
+        w.name("date_created").value("2025-09-01T00:00:00.000000Z");
+        w.name("date_updated").value(String.format("2025-09-%02dT00:00:00.000000Z", 1 + r.nextInt(28)));
+        w.name("is_deprecated").value(r.nextInt(20) == 0);
+        w.name("versions").beginArray();
+        int versions = 1 + r.nextInt(4);
+        for (int v = versions; v >= 1; v--) {
+            String number = "1.0." + v;
+            w.beginObject();
+            w.name("name").value(name.toString());
+            w.name("full_name").value(fullName + "-" + number);
+            StringBuilder description = new StringBuilder();
+            int length = 3 + r.nextInt(10);
+            for (int k = 0; k < length; k++) description.append(k > 0 ? " " : "").append(WORDS[r.nextInt(WORDS.length)]);
+            w.name("description").value(description.toString());
+            w.name("icon").value("https://gcdn.thunderstore.io/live/repository/icons/" + fullName + "-" + number + ".png");
+            w.name("version_number").value(number);
+            w.name("dependencies").beginArray();
+            w.value("BepInEx-BepInExPack_Silksong-5.4.2304");
+            int deps = r.nextInt(5);
+            for (int k = 0; k < deps; k++) w.value(WORDS[r.nextInt(WORDS.length)] + "-" + WORDS[r.nextInt(WORDS.length)] + "_Lib-1.2." + k);
+            w.endArray();
+            w.name("download_url").value("https://thunderstore.io/package/download/" + owner + "/" + name + "/" + number + "/");
+            w.name("date_created").value(String.format("2025-09-%02dT00:00:00.000000Z", 1 + v));
+            w.name("website_url").value(r.nextBoolean() ? "https://github.com/" + owner + "/" + name : "");
+            w.name("is_active").value(r.nextInt(8) != 0);
+            w.endObject();
+        }
+        w.endArray();
+        w.endObject();
+    }
+}
@@ -0,0 +1,321 @@
+package amber.io;
+
+import com.google.gson.stream.JsonWriter;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A local stand-in for Thunderstore that serves the package listing index at ModFetcher.LISTING_PATH and the gzipped chunks it lists,
+ * so refreshes can be measured and tried out offline and the same way every time.
+ * Chunk urls are content addressed like the real ones, so replacing the chunks only changes the urls of the ones that differ.
+ * <p>
+ * Every response can be delayed, sent at a limited rate and failed with a 500 at a given rate. The index has an ETag and answers
+ * a matching If-None-Match with 304, unless ETags are turned off. Requests are handled on virtual threads, so chunks download in parallel
+ * as they would from the CDN.
+ * <p>
+ * Usage: ThunderstoreStub [port] [packages|directory of gzipped chunks] [packages per chunk] [latency millis] [bytes per second] [failure rate]
+ * <br>Then run the bot with -Dfixerbot.thunderstore=http://127.0.0.1:port.
+ */
+public final class ThunderstoreStub implements Closeable {
+    private static final int SLICE = 16 * 1024;
+
+    static {
+        // Otherwise Nagle's algorithm and delayed ACKs add about 40 ms to every response on loopback, which would swamp what's measured.
+        // Only read when the first server is created.
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    private final HttpServer server;
+    private final ExecutorService handlers = Executors.newVirtualThreadPerTaskExecutor();
+    private final Random random = new Random(1);
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong notModified = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong bytesSent = new AtomicLong();
+
+    private volatile Listing listing;
+    private volatile long latencyMillis;
+    private volatile long bytesPerSecond;
+    private volatile double failureRate;
+    private volatile boolean etags = true;
+
+    private record Listing(byte[] index, String etag, List<byte[]> chunks, Map<String, byte[]> byPath) {
+    }
+
+    private ThunderstoreStub(int port, List<byte[]> gzippedChunks) throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.setExecutor(handlers);
+        server.createContext("/", exchange -> {
+            try (exchange) {
+                serve(exchange);
+            } catch (IOException e) {
+                // The client went away, which is its business.
+            }
+        });
+        setChunks(gzippedChunks);
+        server.start();
+    }
+
+    /**
+     * Starts a stub serving already gzipped chunks.
+     *
+     * @param port          The port, 0 for any free one.
+     * @param gzippedChunks The gzipped json of every chunk, in order.
+     * @return The running stub.
+     * @throws IOException If the server can't be started.
+     */
+    public static ThunderstoreStub start(int port, List<byte[]> gzippedChunks) throws IOException {
+        return new ThunderstoreStub(port, gzippedChunks);
+    }
+
+    /**
+     * Starts a stub serving a SyntheticListing.
+     *
+     * @param port     The port, 0 for any free one.
+     * @param packages The amount of packages.
+     * @param perChunk The most packages in a chunk.
+     * @param seed     The seed.
+     * @return The running stub.
+     * @throws IOException If the server can't be started.
+     */
+    public static ThunderstoreStub synthetic(int port, int packages, int perChunk, long seed) throws IOException {
+        return start(port, gzipAll(SyntheticListing.chunks(packages, perChunk, seed)));
+    }
+
+    /**
+     * Starts a stub serving the gzipped chunks recorded in a directory, every *.json.gz in it in the order of their names.
+     *
+     * @param port      The port, 0 for any free one.
+     * @param directory The directory.
+     * @return The running stub.
+     * @throws IOException If the chunks can't be read or the server can't be started.
+     */
+    public static ThunderstoreStub fromDirectory(int port, Path directory) throws IOException {
+        List<byte[]> chunks = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.filter(f -> f.getFileName().toString().endsWith(".json.gz")).sorted().toList()) chunks.add(Files.readAllBytes(file));
+        }
+        if (chunks.isEmpty()) throw new IOException("No *.json.gz chunks in " + directory);
+        return start(port, chunks);
+    }
+
+    /**
+     * Gzips every string, the way chunks are served.
+     *
+     * @param jsons The json of every chunk.
+     * @return The gzipped chunks.
+     */
+    public static List<byte[]> gzipAll(List<String> jsons) {
+        List<byte[]> gzipped = new ArrayList<>(jsons.size());
+        for (String json : jsons) gzipped.add(gzip(json.getBytes(StandardCharsets.UTF_8)));
+        return gzipped;
+    }
+
+    private static byte[] gzip(byte[] bytes) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(bytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Replaces the listing, as a change on Thunderstore would. The index changes along with its ETag.
+     *
+     * @param gzippedChunks The gzipped json of every chunk, in order.
+     */
+    public void setChunks(List<byte[]> gzippedChunks) {
+        Map<String, byte[]> byPath = new HashMap<>();
+        StringWriter urls = new StringWriter();
+        try (JsonWriter w = new JsonWriter(urls)) {
+            w.beginArray();
+            for (byte[] chunk : gzippedChunks) {
+                String path = "/listing/chunk-" + sha256(chunk).substring(0, 16) + ".json.gz";
+                byPath.put(path, chunk);
+                w.value(baseUrl() + path);
+            }
+            w.endArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        byte[] index = gzip(urls.toString().getBytes(StandardCharsets.UTF_8));
+        listing = new Listing(index, "\"" + sha256(index).substring(0, 16) + "\"", List.copyOf(gzippedChunks), Map.copyOf(byPath));
+    }
+
+    /**
+     * @return The gzipped chunks being served, in order.
+     */
+    public List<byte[]> chunks() {
+        return listing.chunks();
+    }
+
+    /**
+     * @return The base url to pass as -Dfixerbot.thunderstore.
+     */
+    public String baseUrl() {
+        return "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort();
+    }
+
+    /**
+     * @return The url of the listing index, to assign to ModFetcher.Url.
+     */
+    public String url() {
+        return baseUrl() + ModFetcher.LISTING_PATH;
+    }
+
+    /**
+     * @param millis How long every response waits before it starts.
+     * @return This stub.
+     */
+    public ThunderstoreStub latency(long millis) {
+        latencyMillis = millis;
+        return this;
+    }
+
+    /**
+     * @param bytesPerSecond The rate every response body is sent at, 0 for as fast as possible.
+     * @return This stub.
+     */
+    public ThunderstoreStub bandwidth(long bytesPerSecond) {
+        this.bytesPerSecond = bytesPerSecond;
+        return this;
+    }
+
+    /**
+     * @param rate The share of requests answered with a 500, from 0 to 1.
+     * @return This stub.
+     */
+    public ThunderstoreStub failures(double rate) {
+        failureRate = rate;
+        return this;
+    }
+
+    /**
+     * @param enabled Whether the index has an ETag and answers a matching If-None-Match with 304.
+     * @return This stub.
+     */
+    public ThunderstoreStub etags(boolean enabled) {
+        etags = enabled;
+        return this;
+    }
+
+    /**
+     * @return Requests, 304s, failures and body bytes sent so far.
+     */
+    public String stats() {
+        return String.format("requests=%d notModified=%d failed=%d bytes=%d", requests.get(), notModified.get(), failed.get(), bytesSent.get());
+    }
+
+    private void serve(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        if (latencyMillis > 0) sleep(TimeUnit.MILLISECONDS.toNanos(latencyMillis));
+        if (failureRate > 0 && nextDouble() < failureRate) {
+            failed.incrementAndGet();
+            exchange.sendResponseHeaders(500, -1);
+            return;
+        }
+
+        Listing current = listing;
+        String path = exchange.getRequestURI().getPath();
+        byte[] body;
+        String etag = null;
+        if (path.equals(ModFetcher.LISTING_PATH)) {
+            body = current.index();
+            if (etags) etag = current.etag();
+        } else {
+            body = current.byPath().get(path);
+        }
+        if (body == null) {
+            exchange.sendResponseHeaders(404, -1);
+            return;
+        }
+        if (etag != null) {
+            exchange.getResponseHeaders().set("ETag", etag);
+            if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                notModified.incrementAndGet();
+                exchange.sendResponseHeaders(304, -1);
+                return;
+            }
+        }
+
+        exchange.getResponseHeaders().set("Content-Type", "application/gzip");
+        exchange.sendResponseHeaders(200, body.length);
+        long rate = bytesPerSecond;
+        long start = System.nanoTime();
+        try (OutputStream out = exchange.getResponseBody()) {
+            for (int off = 0; off < body.length; off += SLICE) {
+                int len = Math.min(SLICE, body.length - off);
+                out.write(body, off, len);
+                bytesSent.addAndGet(len);
+                if (rate > 0) sleep(start + (off + len) * 1_000_000_000L / rate - System.nanoTime());
+            }
+        }
+    }
+
+    private double nextDouble() {
+        synchronized (random) {
+            return random.nextDouble();
+        }
+    }
+
+    private static void sleep(long nanos) {
+        if (nanos <= 0) return;
+        try {
+            TimeUnit.NANOSECONDS.sleep(nanos);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static String sha256(byte[] bytes) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(bytes));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Stops the server right away.
+     */
+    @Override
+    public void close() {
+        server.stop(0);
+        handlers.shutdownNow();
+    }
+
+    public static void main(String[] args) throws Exception {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 8080;
+        String source = args.length > 1 ? args[1] : "5000";
+        int perChunk = args.length > 2 ? Integer.parseInt(args[2]) : 1000;
+        ThunderstoreStub stub = source.chars().allMatch(Character::isDigit)
+                ? synthetic(port, Integer.parseInt(source), perChunk, 42)
+                : fromDirectory(port, Path.of(source));
+        stub.latency(args.length > 3 ? Long.parseLong(args[3]) : 0)
+                .bandwidth(args.length > 4 ? Long.parseLong(args[4]) : 0)
+                .failures(args.length > 5 ? Double.parseDouble(args[5]) : 0);
+        System.out.printf("Serving %d chunks at %s, run the bot with -Dfixerbot.thunderstore=%s%n", stub.chunks().size(), stub.url(), stub.baseUrl());
+        while (true) {
+            Thread.sleep(10_000);
+            System.out.println(stub.stats());
+        }
+    }
+}
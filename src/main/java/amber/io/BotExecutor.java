@@ -0,0 +1,240 @@
+package amber.io;
+
+import java.util.*;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Runs the work of received messages on a fixed amount of workers, with a bounded queue instead of a thread per task,
+ * so a burst of messages can't exhaust threads or memory.
+ * <p>
+ * Tasks are queued per guild and workers take from the guilds in turn, so one busy or spamming guild only delays its own answers.
+ * A guild can hold at most a share of the queue. What happens to a task that doesn't fit is up to the Overflow policy.
+ * Configured with system properties:
+ * fixerbot.workers (default twice the processors), fixerbot.queue (default 512), fixerbot.queue.guild (default a quarter of the queue),
+ * fixerbot.overflow (reject or drop-oldest, default reject) and fixerbot.executor (platform or virtual, default platform).
+ */
+public final class BotExecutor {
+    /**
+     * The upper bounds of the latency buckets, in milliseconds. Anything slower goes in one last bucket.
+     */
+    public static final long[] LATENCY_BUCKETS_MILLIS = {1, 5, 10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000};
+
+    private final int workers;
+    private final int queueCapacity;
+    private final int guildCapacity;
+    private final Overflow overflow;
+    private final Map<Long, ArrayDeque<Task>> queues = new HashMap<>();
+    private final ArrayDeque<Long> turns = new ArrayDeque<>();
+    // A lock rather than synchronized, so waiting virtual workers don't pin their carrier threads.
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private int queued;
+
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong latencyNanos = new AtomicLong();
+    private final AtomicLong maxLatencyNanos = new AtomicLong();
+    private final AtomicLongArray latencyBuckets = new AtomicLongArray(LATENCY_BUCKETS_MILLIS.length + 1);
+
+    /**
+     * Creates an executor and starts its workers.
+     *
+     * @param workers       The amount of workers.
+     * @param queueCapacity The most tasks waiting at once, across every guild.
+     * @param guildCapacity The most tasks of a single guild waiting at once.
+     * @param overflow      What to do with a task that doesn't fit.
+     * @param virtual       Whether workers are virtual threads instead of platform threads.
+     */
+    public BotExecutor(int workers, int queueCapacity, int guildCapacity, Overflow overflow, boolean virtual) {
+        if (workers < 1 || queueCapacity < 1 || guildCapacity < 1) throw new IllegalArgumentException("Workers and capacities must be at least 1");
+        this.workers = workers;
+        this.queueCapacity = queueCapacity;
+        this.guildCapacity = Math.min(guildCapacity, queueCapacity);
+        this.overflow = overflow;
+        ThreadFactory factory = virtual ? Thread.ofVirtual().name("FixerBot-worker-", 0).factory()
+                : Thread.ofPlatform().name("FixerBot-worker-", 0).factory();
+        for (int i = 0; i < workers; i++) factory.newThread(this::work).start();
+    }
+
+    /**
+     * @return The amount of workers.
+     */
+    public int workers() {
+        return workers;
+    }
+
+    /**
+     * Creates an executor configured by the system properties listed on the class.
+     *
+     * @return The executor.
+     */
+    public static BotExecutor fromProperties() {
+        int queue = Integer.getInteger("fixerbot.queue", 512);
+        return new BotExecutor(
+                Integer.getInteger("fixerbot.workers", Runtime.getRuntime().availableProcessors() * 2),
+                queue,
+                Integer.getInteger("fixerbot.queue.guild", Math.max(1, queue / 4)),
+                Overflow.of(System.getProperty("fixerbot.overflow", "reject")),
+                "virtual".equalsIgnoreCase(System.getProperty("fixerbot.executor", "platform")));
+    }
+
+    /**
+     * Queues a task.
+     *
+     * @param guild The id of the guild the task is for, or of the channel for messages outside guilds.
+     * @param task  The task.
+     * @return Whether the task was queued. False if it didn't fit and the policy is REJECT.
+     */
+    public boolean submit(long guild, Runnable task) {
+        submitted.incrementAndGet();
+        lock.lock();
+        try {
+            ArrayDeque<Task> queue = queues.get(guild);
+            if (queued >= queueCapacity || (queue != null && queue.size() >= guildCapacity)) {
+                if (overflow == Overflow.REJECT || queue == null || queue.isEmpty()) {
+                    rejected.incrementAndGet();
+                    return false;
+                }
+                // Only ever the guild's own oldest task, so a full queue can't be used to push out other guilds' work.
+                queue.poll();
+                queued--;
+                dropped.incrementAndGet();
+            }
+            if (queue == null) {
+                queue = new ArrayDeque<>();
+                queues.put(guild, queue);
+                turns.add(guild);
+            }
+            queue.add(new Task(task, System.nanoTime()));
+            queued++;
+            notEmpty.signal();
+        } finally {
+            lock.unlock();
+        }
+        return true;
+    }
+
+    private void work() {
+        while (true) {
+            Task task;
+            try {
+                task = take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            active.incrementAndGet();
+            try {
+                task.runnable().run();
+                completed.incrementAndGet();
+            } catch (Throwable t) {
+                failed.incrementAndGet();
+                FixerBot.LOGGER.error("Worker task failed", t);
+            } finally {
+                active.decrementAndGet();
+                record(System.nanoTime() - task.queuedAt());
+            }
+        }
+    }
+
+    private Task take() throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (queued == 0) notEmpty.await();
+            long guild = turns.poll();
+            ArrayDeque<Task> queue = queues.get(guild);
+            Task task = queue.poll();
+            queued--;
+            if (queue.isEmpty()) queues.remove(guild);
+            else turns.add(guild);
+            return task;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void record(long nanos) {
+        latencyNanos.addAndGet(nanos);
+        maxLatencyNanos.accumulateAndGet(nanos, Math::max);
+        long millis = TimeUnit.NANOSECONDS.toMillis(nanos);
+        int bucket = 0;
+        while (bucket < LATENCY_BUCKETS_MILLIS.length && millis > LATENCY_BUCKETS_MILLIS[bucket]) bucket++;
+        latencyBuckets.incrementAndGet(bucket);
+    }
+
+    /**
+     * Takes a snapshot of the metrics.
+     *
+     * @return The metrics as of now.
+     */
+    public Metrics metrics() {
+        int depth;
+        int guilds;
+        lock.lock();
+        try {
+            depth = queued;
+            guilds = queues.size();
+        } finally {
+            lock.unlock();
+        }
+        long[] buckets = new long[latencyBuckets.length()];
+        for (int i = 0; i < buckets.length; i++) buckets[i] = latencyBuckets.get(i);
+        return new Metrics(depth, guilds, active.get(), submitted.get(), completed.get(), failed.get(), rejected.get(), dropped.get(),
+                latencyNanos.get(), maxLatencyNanos.get(), buckets);
+    }
+
+    /**
+     * What to do with a task when the queue or its guild's share is full.
+     */
+    public enum Overflow {
+        /**
+         * Turn the new task away.
+         */
+        REJECT,
+        /**
+         * Drop the oldest waiting task of the same guild to make room.
+         */
+        DROP_OLDEST;
+
+        /**
+         * Parses a policy from its property value.
+         *
+         * @param value reject or drop-oldest, in any case.
+         * @return The policy.
+         */
+        public static Overflow of(String value) {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT).replace('-', '_'));
+        }
+    }
+
+    /**
+     * The metrics of an executor at one point in time. Latency is from queueing a task to finishing it.
+     *
+     * @param queueDepth      The tasks waiting.
+     * @param queuedGuilds    The guilds with tasks waiting.
+     * @param activeWorkers   The workers running a task.
+     * @param submitted       The tasks submitted.
+     * @param completed       The tasks that finished normally.
+     * @param failed          The tasks that threw.
+     * @param rejected        The tasks turned away.
+     * @param dropped         The tasks dropped from the queue to make room.
+     * @param latencyNanos    The total latency of every finished task.
+     * @param maxLatencyNanos The highest latency of a finished task.
+     * @param latencyBuckets  The amount of finished tasks per bucket of LATENCY_BUCKETS_MILLIS, plus one for anything slower.
+     */
+    public record Metrics(int queueDepth, int queuedGuilds, int activeWorkers, long submitted, long completed, long failed, long rejected,
+                          long dropped, long latencyNanos, long maxLatencyNanos, long[] latencyBuckets) {
+    }
+
+    private record Task(Runnable runnable, long queuedAt) {
+    }
+}
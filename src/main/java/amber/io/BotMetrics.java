@@ -0,0 +1,289 @@
+package amber.io;
+
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The bot's metrics, in the Prometheus text format so any scraper can read them without a client library.
+ * Counters and histograms are updated where things happen, anything that already has a current value (the index, the executor, the sender)
+ * is read when the metrics are rendered.
+ * <p>
+ * Served on 127.0.0.1 at /metrics when the fixerbot.metrics.port system property is set.
+ */
+public final class BotMetrics {
+    /**
+     * The port to serve the metrics on, from the fixerbot.metrics.port system property. 0 doesn't serve them.
+     */
+    public static final int PORT = Integer.getInteger("fixerbot.metrics.port", 0);
+
+    private static final long[] SECONDS_NANOS = {5_000_000L, 10_000_000L, 25_000_000L, 50_000_000L, 100_000_000L, 250_000_000L, 500_000_000L,
+            1_000_000_000L, 2_500_000_000L, 5_000_000_000L, 10_000_000_000L, 30_000_000_000L};
+    private static final long[] MICROS_NANOS = {10_000L, 50_000L, 100_000L, 250_000L, 500_000L, 1_000_000L, 2_500_000L, 5_000_000L,
+            10_000_000L, 50_000_000L};
+
+    /**
+     * How long each stage of a refresh took: download, decompress and parse per chunk, index and publish per changed listing, and total per refresh.
+     * Chunks are fetched in parallel, so the chunk stages can add up to more than the total.
+     */
+    public static final Histogram REFRESH = new Histogram("fixerbot_refresh_seconds", "Duration of each stage of a listing refresh.", "stage", SECONDS_NANOS, 1e9);
+    /**
+     * How refreshes ended: changed, unchanged, not_modified or failed.
+     */
+    public static final Counter REFRESHES = new Counter("fixerbot_refreshes_total", "Listing refreshes by result.", "result");
+    /**
+     * How long ModResolver.resolve took, by the ModResolver.Kind it ended with.
+     */
+    public static final Histogram RESOLVE = new Histogram("fixerbot_resolve_seconds", "Duration of resolving a name that wasn't cached, by outcome.", "kind", MICROS_NANOS, 1e9);
+    /**
+     * Whether respond found a name in FixerBot.QUERY_CACHE: hit or miss.
+     */
+    public static final Counter QUERIES = new Counter("fixerbot_query_cache_requests_total", "Names answered, by whether the query cache had them.", "result");
+    /**
+     * How many keys a closest name search computed the distance to.
+     */
+    public static final Histogram CANDIDATES = new Histogram("fixerbot_levenshtein_candidates", "Keys compared per closest name search.", null,
+            new long[]{1, 2, 5, 10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000}, 1);
+    /**
+     * How long a reply took from SendScheduler handing it to JDA to the REST call completing, by result: ok or failed.
+     */
+    public static final Histogram SEND = new Histogram("fixerbot_send_seconds", "Duration of sending a reply, from queueing it with JDA to its completion.", "result",
+            SECONDS_NANOS, 1e9);
+    /**
+     * The embeds SendScheduler sent.
+     */
+    public static final Counter SENT_EMBEDS = new Counter("fixerbot_sent_embeds_total", "Embeds sent in replies.", null);
+
+    private BotMetrics() {
+    }
+
+    /**
+     * Starts serving the metrics at /metrics on 127.0.0.1.
+     *
+     * @param port The port.
+     * @return The running server.
+     * @throws IOException If the port can't be bound.
+     */
+    public static HttpServer serve(int port) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.createContext("/metrics", exchange -> {
+            try (exchange) {
+                byte[] body = render().getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+                exchange.sendResponseHeaders(200, body.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(body);
+                }
+            }
+        });
+        server.start();
+        return server;
+    }
+
+    /**
+     * @return Every metric in the Prometheus text format.
+     */
+    public static String render() {
+        StringBuilder out = new StringBuilder();
+        CacheSnapshot snapshot = FixerBot.snapshot();
+        gauge(out, "fixerbot_packages", "Packages in the current index.", snapshot.index().size());
+        gauge(out, "fixerbot_cache_generation", "Generation of the current index.", snapshot.generation());
+        gauge(out, "fixerbot_cache_published_timestamp_seconds", "When the current index was published.", snapshot.fetchedAt().toEpochMilli() / 1000.0);
+        gauge(out, "fixerbot_query_cache_entries", "Entries in the query cache.", FixerBot.QUERY_CACHE.size());
+        REFRESH.render(out);
+        REFRESHES.render(out);
+        RESOLVE.render(out);
+        QUERIES.render(out);
+        CANDIDATES.render(out);
+
+        BotExecutor.Metrics m = FixerBot.WORKER.metrics();
+        gauge(out, "fixerbot_executor_queue_depth", "Tasks waiting for a worker.", m.queueDepth());
+        gauge(out, "fixerbot_executor_queued_guilds", "Guilds with tasks waiting.", m.queuedGuilds());
+        gauge(out, "fixerbot_executor_active_workers", "Workers running a task.", m.activeWorkers());
+        out.append("# HELP fixerbot_executor_tasks_total Tasks by what happened to them.\n# TYPE fixerbot_executor_tasks_total counter\n");
+        sample(out, "fixerbot_executor_tasks_total", "result=\"submitted\"", m.submitted());
+        sample(out, "fixerbot_executor_tasks_total", "result=\"completed\"", m.completed());
+        sample(out, "fixerbot_executor_tasks_total", "result=\"failed\"", m.failed());
+        sample(out, "fixerbot_executor_tasks_total", "result=\"rejected\"", m.rejected());
+        sample(out, "fixerbot_executor_tasks_total", "result=\"dropped\"", m.dropped());
+        out.append("# HELP fixerbot_executor_latency_seconds Time from submitting a task to it finishing.\n# TYPE fixerbot_executor_latency_seconds histogram\n");
+        long cumulative = 0;
+        for (int i = 0; i < BotExecutor.LATENCY_BUCKETS_MILLIS.length; i++) {
+            cumulative += m.latencyBuckets()[i];
+            sample(out, "fixerbot_executor_latency_seconds_bucket", "le=\"" + BotExecutor.LATENCY_BUCKETS_MILLIS[i] / 1000.0 + "\"", cumulative);
+        }
+        cumulative += m.latencyBuckets()[BotExecutor.LATENCY_BUCKETS_MILLIS.length];
+        sample(out, "fixerbot_executor_latency_seconds_bucket", "le=\"+Inf\"", cumulative);
+        sample(out, "fixerbot_executor_latency_seconds_sum", null, m.latencyNanos() / 1e9);
+        sample(out, "fixerbot_executor_latency_seconds_count", null, cumulative);
+
+        gauge(out, "fixerbot_send_pending_embeds", "Embeds waiting to be sent.", FixerBot.SENDER.pending());
+        gauge(out, "fixerbot_send_channels", "Channels with a send queue.", FixerBot.SENDER.channels());
+        SEND.render(out);
+        SENT_EMBEDS.render(out);
+        return out.toString();
+    }
+
+    private static void gauge(StringBuilder out, String name, String help, double value) {
+        out.append("# HELP ").append(name).append(' ').append(help).append("\n# TYPE ").append(name).append(" gauge\n");
+        sample(out, name, null, value);
+    }
+
+    private static void sample(StringBuilder out, String name, String labels, double value) {
+        out.append(name);
+        if (labels != null) out.append('{').append(labels).append('}');
+        out.append(' ');
+        if (value == Math.rint(value) && Math.abs(value) < 1e15) out.append((long) value);
+        else out.append(value);
+        out.append('\n');
+    }
+
+    private static String label(String name, String value) {
+        return name == null ? null : name + "=\"" + value + "\"";
+    }
+
+    /**
+     * A counter, optionally split by the value of one label.
+     */
+    public static final class Counter {
+        private final String name;
+        private final String help;
+        private final String label;
+        private final Map<String, LongAdder> series = new ConcurrentHashMap<>();
+
+        /**
+         * Creates a counter.
+         *
+         * @param name  The metric name.
+         * @param help  The description.
+         * @param label The name of the label, null for none.
+         */
+        public Counter(String name, String help, String label) {
+            this.name = name;
+            this.help = help;
+            this.label = label;
+        }
+
+        /**
+         * Adds one.
+         *
+         * @param labelValue The value of the label, ignored without one.
+         */
+        public void increment(String labelValue) {
+            add(labelValue, 1);
+        }
+
+        /**
+         * Adds an amount.
+         *
+         * @param labelValue The value of the label, ignored without one.
+         * @param amount     The amount.
+         */
+        public void add(String labelValue, long amount) {
+            series.computeIfAbsent(label == null ? "" : labelValue, k -> new LongAdder()).add(amount);
+        }
+
+        void render(StringBuilder out) {
+            out.append("# HELP ").append(name).append(' ').append(help).append("\n# TYPE ").append(name).append(" counter\n");
+            for (Map.Entry<String, LongAdder> e : new TreeMap<>(series).entrySet()) sample(out, name, label(label, e.getKey()), e.getValue().sum());
+        }
+    }
+
+    /**
+     * A histogram with fixed buckets, optionally split by the value of one label.
+     * Values are observed as longs, nanoseconds for durations, and divided by the scale when rendered.
+     */
+    public static final class Histogram {
+        private final String name;
+        private final String help;
+        private final String label;
+        private final long[] bounds;
+        private final double scale;
+        private final Map<String, Series> series = new ConcurrentHashMap<>();
+
+        /**
+         * Creates a histogram.
+         *
+         * @param name   The metric name.
+         * @param help   The description.
+         * @param label  The name of the label, null for none.
+         * @param bounds The inclusive upper bound of every bucket, ascending, in observed units. Anything above the last goes in +Inf.
+         * @param scale  What observed values are divided by when rendered, 1e9 to render nanoseconds in seconds.
+         */
+        public Histogram(String name, String help, String label, long[] bounds, double scale) {
+            this.name = name;
+            this.help = help;
+            this.label = label;
+            this.bounds = bounds;
+            this.scale = scale;
+        }
+
+        /**
+         * Observes a value without a label.
+         *
+         * @param value The value.
+         */
+        public void observe(long value) {
+            observe("", value);
+        }
+
+        /**
+         * Observes a value.
+         *
+         * @param labelValue The value of the label, ignored without one.
+         * @param value      The value.
+         */
+        public void observe(String labelValue, long value) {
+            Series s = series.computeIfAbsent(label == null ? "" : labelValue, k -> new Series(bounds.length + 1));
+            int bucket = 0;
+            while (bucket < bounds.length && value > bounds[bucket]) bucket++;
+            s.buckets[bucket].increment();
+            s.sum.add(value);
+        }
+
+        /**
+         * Observes the time since a start.
+         *
+         * @param labelValue The value of the label, ignored without one.
+         * @param startNanos The System.nanoTime() at the start.
+         */
+        public void observeSince(String labelValue, long startNanos) {
+            observe(labelValue, System.nanoTime() - startNanos);
+        }
+
+        void render(StringBuilder out) {
+            out.append("# HELP ").append(name).append(' ').append(help).append("\n# TYPE ").append(name).append(" histogram\n");
+            for (Map.Entry<String, Series> e : new TreeMap<>(series).entrySet()) {
+                String labels = label(label, e.getKey());
+                String prefix = labels == null ? "" : labels + ",";
+                long cumulative = 0;
+                for (int i = 0; i < bounds.length; i++) {
+                    cumulative += e.getValue().buckets[i].sum();
+                    sample(out, name + "_bucket", prefix + "le=\"" + bounds[i] / scale + "\"", cumulative);
+                }
+                cumulative += e.getValue().buckets[bounds.length].sum();
+                sample(out, name + "_bucket", prefix + "le=\"+Inf\"", cumulative);
+                sample(out, name + "_sum", labels, e.getValue().sum.sum() / scale);
+                sample(out, name + "_count", labels, cumulative);
+            }
+        }
+
+        private static final class Series {
+            final LongAdder[] buckets;
+            final LongAdder sum = new LongAdder();
+
+            Series(int buckets) {
+                this.buckets = new LongAdder[buckets];
+                for (int i = 0; i < buckets; i++) this.buckets[i] = new LongAdder();
+            }
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package amber.io;
+
+import java.time.Instant;
+
+/**
+ * Everything the bot answers from, as of one refresh, published as a whole through FixerBot.CACHE.
+ * A reader that gets a snapshot once sees an index and embeds that belong together for as long as it holds on to it,
+ * without taking a lock, however many refreshes happen meanwhile.
+ *
+ * @param index      The index of every mod.
+ * @param embeds     The pre-rendered embeds of index, EmbedStore.EMPTY unless EmbedStore.ENABLED.
+ * @param generation The generation of index, which cached results are tagged with.
+ * @param fetchedAt  When this snapshot was published.
+ */
+public record CacheSnapshot(ModIndex index, EmbedStore embeds, long generation, Instant fetchedAt) {
+    /**
+     * The snapshot used before the first refresh finishes.
+     */
+    public static final CacheSnapshot EMPTY = new CacheSnapshot(ModIndex.EMPTY, EmbedStore.EMPTY, ModIndex.EMPTY.generation(), Instant.EPOCH);
+}
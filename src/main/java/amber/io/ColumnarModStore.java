@@ -0,0 +1,324 @@
+package amber.io;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * A memory-mapped, column per field store for the ModDetails of every package, so they cost almost nothing on the heap.
+ * Enabled with -Dfixerbot.store=mapped. Only the details move: the packages keep their names, description and derived lookup keys
+ * on the heap, since every lookup reads those, while their details become Rows, flyweights that only hold a row number and decode a value
+ * from the mapped file when it's asked for.
+ * <p>
+ * Layout: magic, format version, row count, string count, the byte offset of every distinct string (plus one past the last),
+ * the UTF-8 bytes of every distinct string, then one int column of string ids per ModDetails field. Repeated strings such as
+ * authors, dependencies and url prefixes shared by several versions are stored once.
+ * <p>
+ * A file is never replaced while it may still be mapped, which Windows refuses. Every store is written to a file of its own generation,
+ * mods.1.columns, mods.2.columns and so on, and older generations are deleted once nothing refers to their stores anymore.
+ */
+public final class ColumnarModStore {
+    /**
+     * Whether package details are moved into a mapped store, from the fixerbot.store system property.
+     */
+    public static final boolean ENABLED = "mapped".equalsIgnoreCase(System.getProperty("fixerbot.store", "heap"));
+    /**
+     * Where the store is kept, from the fixerbot.columns system property. Each generation is written next to it,
+     * with the generation number put before the extension.
+     */
+    public static final Path PATH = Path.of(System.getProperty("fixerbot.columns", "mods.columns"));
+    /**
+     * The first four bytes of every store, "FXBC".
+     */
+    public static final int MAGIC = 0x46584243;
+    /**
+     * The format version.
+     */
+    public static final int VERSION = 1;
+
+    private static final int HEADER_BYTES = 4 * 4;
+    private static final Map<Path, WeakReference<ColumnarModStore>> MAPPED = new HashMap<>();
+
+    private final ByteBuffer buf;
+    private final int rows;
+    private final int offsetsPos;
+    private final int bytesPos;
+    private final int columnsPos;
+
+    private ColumnarModStore(ByteBuffer buf) throws IOException {
+        if (buf.limit() < HEADER_BYTES || buf.getInt(0) != MAGIC || buf.getInt(4) != VERSION) throw new IOException("Not a columnar mod store");
+        this.buf = buf;
+        this.rows = buf.getInt(8);
+        int strings = buf.getInt(12);
+        this.offsetsPos = HEADER_BYTES;
+        this.bytesPos = offsetsPos + (strings + 1) * 4;
+        this.columnsPos = bytesPos + buf.getInt(offsetsPos + strings * 4);
+        if ((long) columnsPos + (long) rows * ModDetails.FIELDS * 4 != buf.limit()) throw new IOException("Columnar mod store is cut short");
+    }
+
+    /**
+     * Writes a store, moving it into place only once it's fully written, and maps it.
+     *
+     * @param path    The file to write, which must not be mapped already.
+     * @param details The details of every row, in order.
+     * @return The mapped store.
+     * @throws IOException If the file can't be written or mapped.
+     */
+    public static ColumnarModStore write(Path path, List<ModDetails> details) throws IOException {
+        StringTable table = new StringTable();
+        int[][] columns = new int[ModDetails.FIELDS][details.size()];
+        for (int row = 0; row < details.size(); row++) {
+            String[] values = details.get(row).toArray();
+            for (int c = 0; c < ModDetails.FIELDS; c++) columns[c][row] = table.id(values[c]);
+        }
+
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(details.size());
+            out.writeInt(table.size());
+
+            List<byte[]> encoded = new ArrayList<>(table.size());
+            int offset = 0;
+            for (String s : table.strings()) {
+                byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+                encoded.add(bytes);
+                out.writeInt(offset);
+                offset += bytes.length;
+            }
+            out.writeInt(offset);
+            for (byte[] bytes : encoded) out.write(bytes);
+
+            for (int[] column : columns)
+                for (int id : column) out.writeInt(id);
+        }
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return map(path);
+    }
+
+    /**
+     * Maps an existing store.
+     *
+     * @param path The file to map.
+     * @return The mapped store.
+     * @throws IOException If the file can't be mapped or isn't a store.
+     */
+    public static ColumnarModStore map(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return new ColumnarModStore(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Moves the details of every package in the chunks into a newly written generation of the store at PATH.
+     * Same as mapChunks(PATH, chunks).
+     *
+     * @param chunks The chunks, with details on the heap or in an older store.
+     * @return The same chunks, with every package's details replaced by a Row of the new store.
+     * @throws IOException If the store can't be written.
+     */
+    public static List<ModFetcher.Chunk> mapChunks(List<ModFetcher.Chunk> chunks) throws IOException {
+        return mapChunks(PATH, chunks);
+    }
+
+    /**
+     * Moves the details of every package in the chunks into a newly written generation of a store, then deletes the generations
+     * nothing refers to anymore.
+     *
+     * @param path   Where the store is kept.
+     * @param chunks The chunks, with details on the heap or in an older store.
+     * @return The same chunks, with every package's details replaced by a Row of the new store.
+     * @throws IOException If the store can't be written.
+     */
+    public static synchronized List<ModFetcher.Chunk> mapChunks(Path path, List<ModFetcher.Chunk> chunks) throws IOException {
+        List<ModDetails> details = new ArrayList<>();
+        for (ModFetcher.Chunk chunk : chunks)
+            for (ModPackage p : chunk.packages())
+                if (p.details() != null) details.add(p.details());
+
+        long[] generations = generations(path);
+        Path file = generation(path, generations.length == 0 ? 1 : generations[generations.length - 1] + 1);
+        ColumnarModStore store = write(file, details);
+        MAPPED.put(file.toAbsolutePath(), new WeakReference<>(store));
+        deleteSuperseded(path);
+        List<ModFetcher.Chunk> mapped = new ArrayList<>(chunks.size());
+        int row = 0;
+        for (ModFetcher.Chunk chunk : chunks) {
+            List<ModPackage> packages = new ArrayList<>(chunk.packages().size());
+            for (ModPackage p : chunk.packages()) packages.add(p.details() == null ? p : p.withDetails(store.row(row++)));
+            mapped.add(new ModFetcher.Chunk(chunk.url(), chunk.hash(), List.copyOf(packages)));
+        }
+        return mapped;
+    }
+
+    /**
+     * Deletes every generation of a store but the newest, unless a store mapped from it can still be reached.
+     * A generation that can't be deleted yet, such as one Windows still has mapped, is tried again the next time.
+     *
+     * @param path Where the store is kept.
+     */
+    public static synchronized void deleteSuperseded(Path path) {
+        long[] generations;
+        try {
+            generations = generations(path);
+        } catch (IOException e) {
+            FixerBot.LOGGER.warn("Could not list the columnar mod stores next to {}", path, e);
+            return;
+        }
+        for (int i = 0; i < generations.length - 1; i++) {
+            Path file = generation(path, generations[i]).toAbsolutePath();
+            WeakReference<ColumnarModStore> mapped = MAPPED.get(file);
+            if (mapped != null && mapped.get() != null) continue;
+            try {
+                Files.deleteIfExists(file);
+                MAPPED.remove(file);
+            } catch (IOException e) {
+                FixerBot.LOGGER.debug("Could not delete columnar mod store {} yet", file, e);
+            }
+        }
+    }
+
+    /**
+     * Gets the file of one generation of a store.
+     *
+     * @param path       Where the store is kept.
+     * @param generation The generation.
+     * @return The file, the generation number put before the extension of path.
+     */
+    public static Path generation(Path path, long generation) {
+        String name = path.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        return path.resolveSibling(dot < 0 ? name + "." + generation : name.substring(0, dot) + "." + generation + name.substring(dot));
+    }
+
+    /**
+     * Finds the generations of a store on disk.
+     *
+     * @param path Where the store is kept.
+     * @return The generations, oldest first.
+     * @throws IOException If the directory can't be listed.
+     */
+    public static long[] generations(Path path) throws IOException {
+        String name = path.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        String prefix = (dot < 0 ? name : name.substring(0, dot)) + ".";
+        String suffix = dot < 0 ? "" : name.substring(dot);
+        Path dir = path.toAbsolutePath().getParent();
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.map(f -> f.getFileName().toString())
+                    .filter(f -> f.length() > prefix.length() + suffix.length() && f.startsWith(prefix) && f.endsWith(suffix))
+                    .map(f -> f.substring(prefix.length(), f.length() - suffix.length()))
+                    .filter(g -> g.chars().allMatch(c -> c >= '0' && c <= '9') && g.length() < 19)
+                    .mapToLong(Long::parseLong)
+                    .sorted()
+                    .toArray();
+        }
+    }
+
+    /**
+     * @return The amount of rows.
+     */
+    public int rows() {
+        return rows;
+    }
+
+    /**
+     * Gets the flyweight for a row.
+     *
+     * @param row The row.
+     * @return The details of that row, read from the store on access.
+     */
+    public Row row(int row) {
+        if (row < 0 || row >= rows) throw new IndexOutOfBoundsException(row);
+        return new Row(this, row);
+    }
+
+    /**
+     * Decodes a single value.
+     *
+     * @param row    The row.
+     * @param column The column, in the order of ModDetails.toArray.
+     * @return The value, null if it was null when written.
+     */
+    public String get(int row, int column) {
+        int id = buf.getInt(columnsPos + (column * rows + row) * 4);
+        if (id < 0) return null;
+        int start = buf.getInt(offsetsPos + id * 4);
+        int end = buf.getInt(offsetsPos + id * 4 + 4);
+        byte[] bytes = new byte[end - start];
+        buf.get(bytesPos + start, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * The details of a single package, read from the store on every access.
+     *
+     * @param store The store the row is in.
+     * @param row   The row.
+     */
+    public record Row(ColumnarModStore store, int row) implements ModDetails {
+        @Override
+        public String downloadUrl() {
+            return store.get(row, 0);
+        }
+
+        @Override
+        public String description() {
+            return store.get(row, 1);
+        }
+
+        @Override
+        public String dependencies() {
+            return store.get(row, 2);
+        }
+
+        @Override
+        public String deprecated() {
+            return store.get(row, 3);
+        }
+
+        @Override
+        public String author() {
+            return store.get(row, 4);
+        }
+
+        @Override
+        public String icon() {
+            return store.get(row, 5);
+        }
+
+        @Override
+        public String version() {
+            return store.get(row, 6);
+        }
+
+        @Override
+        public String name() {
+            return store.get(row, 7);
+        }
+
+        @Override
+        public String page() {
+            return store.get(row, 8);
+        }
+
+        @Override
+        public String website() {
+            return store.get(row, 9);
+        }
+    }
+}
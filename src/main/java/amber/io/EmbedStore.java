@@ -0,0 +1,86 @@
+package amber.io;
+
+import net.dv8tion.jda.api.entities.MessageEmbed;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+/**
+ * The embed of every package of an index, rendered during the refresh so answering a {{mod}} is a lookup instead of building the embed.
+ * Enabled with -Dfixerbot.prerender=true.
+ * <p>
+ * Embeds only depend on the package, so a new store takes the embeds of every package the change set doesn't list as added or updated
+ * from the previous store, and only renders the rest. Rendering runs in parallel on the common fork-join pool.
+ */
+public final class EmbedStore {
+    /**
+     * Whether embeds are rendered during refreshes, from the fixerbot.prerender system property.
+     */
+    public static final boolean ENABLED = Boolean.getBoolean("fixerbot.prerender");
+    /**
+     * The store used when pre-rendering is off or before the first refresh.
+     */
+    public static final EmbedStore EMPTY = new EmbedStore(ModIndex.EMPTY, new MessageEmbed[0]);
+
+    private final ModIndex index;
+    private final MessageEmbed[] embeds;
+
+    private EmbedStore(ModIndex index, MessageEmbed[] embeds) {
+        this.index = index;
+        this.embeds = embeds;
+    }
+
+    /**
+     * Builds the store of a new index.
+     *
+     * @param previous The store of the previous index.
+     * @param changes  The changes from the previous index to the new one, whose next index is the one to render.
+     * @return The store.
+     */
+    public static EmbedStore build(EmbedStore previous, ModChangeSet changes) {
+        ModIndex next = changes.next();
+        MessageEmbed[] embeds = new MessageEmbed[next.size()];
+        boolean reuse = previous.index == changes.previous();
+        Set<String> changed = new HashSet<>();
+        for (ModPackage p : changes.added()) changed.add(p.identity());
+        for (ModPackage p : changes.updated()) changed.add(p.identity());
+
+        IntStream.range(0, embeds.length).parallel().forEach(i -> {
+            ModPackage p = next.packages().get(i);
+            if (p.details() == null) return;
+            if (reuse && !changed.contains(p.identity()) && next.byIdentity(p.identity()) == p) {
+                ModPackage old = previous.index.byIdentity(p.identity());
+                if (old != null && previous.embeds[old.ordinal()] != null) {
+                    embeds[i] = previous.embeds[old.ordinal()];
+                    return;
+                }
+            }
+            try {
+                embeds[i] = FixerBot.createModEmbed(p);
+            } catch (RuntimeException e) {
+                // Left out, so the package is rendered on request and fails there the way it always has.
+                FixerBot.LOGGER.warn("Could not pre-render {}", p.identity(), e);
+            }
+        });
+        return new EmbedStore(next, embeds);
+    }
+
+    /**
+     * Gets the embed of a package.
+     *
+     * @param pkg The package.
+     * @return The embed, null if the package isn't from the index of this store or has none.
+     */
+    public MessageEmbed get(ModPackage pkg) {
+        int i = pkg.ordinal();
+        return i < embeds.length && index.packages().get(i) == pkg ? embeds[i] : null;
+    }
+
+    /**
+     * @return The index this store was rendered from.
+     */
+    public ModIndex index() {
+        return index;
+    }
+}
@@ -1,26 +1,32 @@
 package amber.io;
 
-import com.google.gson.JsonObject;
 import net.dv8tion.jda.api.EmbedBuilder;
 import net.dv8tion.jda.api.JDA;
 import net.dv8tion.jda.api.Permission;
+import net.dv8tion.jda.api.entities.Message;
 import net.dv8tion.jda.api.entities.MessageEmbed;
 import net.dv8tion.jda.api.events.message.MessageReceivedEvent;
 import net.dv8tion.jda.api.hooks.ListenerAdapter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
 import java.net.URI;
 import java.time.Instant;
 import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
-import java.util.Arrays;
-import java.util.Collections;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -38,23 +44,50 @@ public class FixerBot {
      */
     public static final ScheduledExecutorService SCHEDULED = Executors.newScheduledThreadPool(1);
     /**
-     * A worker for handling received messages asynchronously.
+     * A worker for handling received messages asynchronously, bounded and fair between guilds. See BotExecutor for its settings.
      */
-    public static final ExecutorService WORKER = Executors.newCachedThreadPool();
+    public static final BotExecutor WORKER = BotExecutor.fromProperties();
+    /**
+     * Sends answers per channel, coalesced and without repeats. See SendScheduler for its settings.
+     */
+    public static final SendScheduler SENDER = SendScheduler.fromProperties();
+    /**
+     * Whether the names of a message are resolved at the same time on a virtual thread each, from fixerbot.dispatch=virtual,
+     * instead of one after another on the message's WORKER task.
+     */
+    public static final boolean VIRTUAL_DISPATCH = "virtual".equalsIgnoreCase(System.getProperty("fixerbot.dispatch", "tag"));
     /**
      * The pattern to match in order to provide a response. Matches {{[\w ]+}}, which matches two opening braces, then any amount of characters that are either
      * alphanumeric (a-zA-Z0-9), an underscore, or a space. Finally, matches two closing braces.
      */
     public static final Pattern PATTERN = Pattern.compile("\\{\\{([\\w ]+)}}");
     /**
-     * The cache of mods.
+     * The cache of mods and everything derived from it, replaced as a whole on every refresh.
+     */
+    public static final AtomicReference<CacheSnapshot> CACHE = new AtomicReference<>(CacheSnapshot.EMPTY);
+    /**
+     * Everything that wants to know which packages changed whenever the cache is replaced.
+     * Called by the thread that published, after the new snapshot is visible, so two publishers can call a listener at the same time.
+     */
+    public static final List<Consumer<ModChangeSet>> CHANGE_LISTENERS = new CopyOnWriteArrayList<>();
+    /**
+     * Resolved names and their embeds for the current index.
      */
-    public static volatile List<JsonObject> jsons = Collections.emptyList();
+    public static final QueryCache QUERY_CACHE = new QueryCache(QueryCache.CAPACITY);
 
     /**
-     * Creates the bot, adds the listener.
+     * Loads the last snapshot of the mod cache, creates the bot, adds the listener.
      */
     public static void main(String[] args) {
+        ModChangeSet restored = publish(ModFetcher.restore());
+        if (!restored.isEmpty()) LOGGER.info("Loaded {} mods from {}", index().size(), ModSnapshot.PATH);
+        if (BotMetrics.PORT > 0) {
+            try {
+                BotMetrics.serve(BotMetrics.PORT);
+            } catch (IOException e) {
+                LOGGER.warn("Could not serve metrics on port {}", BotMetrics.PORT, e);
+            }
+        }
         JDA bot = BotInit.createBot();
         bot.addEventListener(new MessageListener());
         addSchedule();
@@ -64,15 +97,68 @@ public class FixerBot {
 
     /**
      * Schedules a task on the ScheduledExecutorService to update the mod cache and log the timestamp of the action.
+     * Refreshes are conditional, so most runs end at a 304 and the cache and log are only touched when the listing changed.
      */
     public static void addSchedule() {
         SCHEDULED.scheduleWithFixedDelay(() -> {
-            List<JsonObject> list = ModFetcher.getAllMods();
-            jsons = List.copyOf(list);
-            LOGGER.info("Fetching all mods at [{}]", DateTimeFormatter.ofPattern("yyyy-MM-dd, HH:mm:ss")
+            ModIndex next = ModFetcher.getAllMods();
+            if (next == index()) return;
+            ModChangeSet changes = publish(next);
+            LOGGER.info("Fetching all mods at [{}], {} added, {} updated, {} removed", DateTimeFormatter.ofPattern("yyyy-MM-dd, HH:mm:ss")
                     .withZone(ZoneId.systemDefault())
-                    .format(Instant.now()));
-        }, 0, 30, TimeUnit.MINUTES);
+                    .format(Instant.now()), changes.added().size(), changes.updated().size(), changes.removed().size());
+        }, 0, 2, TimeUnit.MINUTES);
+    }
+
+    /**
+     * @return The current snapshot of the cache.
+     */
+    public static CacheSnapshot snapshot() {
+        return CACHE.get();
+    }
+
+    /**
+     * @return The index of the current snapshot of the cache.
+     */
+    public static ModIndex index() {
+        return CACHE.get().index();
+    }
+
+    /**
+     * Replaces the cache and tells every listener in CHANGE_LISTENERS what changed.
+     * Everything derived from the new index is built before the new snapshot is published in one set, so readers never wait on a refresh
+     * and never see a new index with old derived data. The derived data is built without holding the lock, which only covers the swap itself,
+     * so a long render doesn't hold up a {{reloadcache}}. If another publisher swapped in the meantime, the changes are taken again against its snapshot.
+     *
+     * @param next The new index.
+     * @return The changes from the old cache to the new one.
+     */
+    public static ModChangeSet publish(ModIndex next) {
+        ModChangeSet changes;
+        while (true) {
+            CacheSnapshot current = CACHE.get();
+            changes = ModChangeSet.between(current.index(), next);
+            if (next == current.index()) break;
+            long start = System.nanoTime();
+            EmbedStore embeds = EmbedStore.ENABLED ? EmbedStore.build(current.embeds(), changes) : EmbedStore.EMPTY;
+            synchronized (CACHE) {
+                if (CACHE.get() != current) continue;
+                CACHE.set(new CacheSnapshot(next, embeds, next.generation(), Instant.now()));
+                QUERY_CACHE.clear();
+            }
+            BotMetrics.REFRESH.observeSince("publish", start);
+            break;
+        }
+        if (!changes.isEmpty()) {
+            for (Consumer<ModChangeSet> listener : CHANGE_LISTENERS) {
+                try {
+                    listener.accept(changes);
+                } catch (RuntimeException e) {
+                    LOGGER.error("Change listener failed", e);
+                }
+            }
+        }
+        return changes;
     }
 
     /**
@@ -82,58 +168,183 @@ public class FixerBot {
      * @return The fully constructed embed or the value of createNotFoundEmbed if getAllValues returns null.
      */
     public static MessageEmbed createEmbedFromModName(String modName) {
-        String[] vals = BotUtils.getAllValues(modName);
-        if (vals != null) {
-            EmbedBuilder eb = new EmbedBuilder();
-            eb.setColor(0x7E0923);
-            boolean deprecated = Boolean.parseBoolean(vals[3]);
-            if (!deprecated) {
-                eb.setDescription(vals[1]);
-            } else {
-                eb.setDescription(String.format("~~%s~~\n\nThis mod is deprecated. Alternative packages should be used whenever possible.", vals[1]));
-            }
-            eb.setTitle(vals[7].replaceAll("_", " ") + (deprecated ? (vals[7].endsWith(" ") ? "- " : " - ") + "Deprecated" : ""));
-            eb.addField("Version", vals[6], false);
-            String pageLink = "[Page](" + vals[8] + ")";
-            String downloadLink = "[Download](" + vals[0] + ")";
-            String siteLink = "";
-            if (!vals[9].isEmpty()) {
-                String site = URI.create(vals[9]).getHost();
-                if (site.contains("github.com")) {
-                    siteLink = "[Github](" + vals[9] + ")";
-                } else {
-                    siteLink = "[Website](" + vals[9] + ")";
+        ModIndex idx = index();
+        ModResolver.Resolution found = ModResolver.byTitle(idx, modName);
+        return createEmbed(found != null ? found : ModResolver.closest(idx, modName));
+    }
+
+    /**
+     * Creates the embeds answering every name of a message, without repeats: names that only differ in case or surrounding spaces
+     * are resolved once, and a package asked for under several names is shown once.
+     * With VIRTUAL_DISPATCH the names are resolved at the same time on a virtual thread each, and this returns once all of them are done,
+     * so the work of a message never outlives its task. A name that fails to resolve is left out and doesn't stop the others.
+     *
+     * @param names The trimmed names in the message, in order.
+     * @return The embeds, in the order of the names they first answer.
+     */
+    public static List<MessageEmbed> respondAll(List<String> names) {
+        Map<String, String> unique = new LinkedHashMap<>();
+        for (String name : names) unique.putIfAbsent(name.trim().toLowerCase(), name);
+
+        List<MessageEmbed> embeds = new ArrayList<>(unique.size());
+        if (!VIRTUAL_DISPATCH || unique.size() == 1) {
+            for (String name : unique.values()) {
+                try {
+                    addDistinct(embeds, respond(name));
+                } catch (RuntimeException e) {
+                    LOGGER.error("Handling {} failed", name, e);
                 }
             }
-            eb.addField("Links", pageLink + " | " + downloadLink + (vals[9].isEmpty() ? "" : " | " + siteLink), false);
-            if (!vals[2].isEmpty()) {
-                String[] depArr = vals[2].split("\\s* \\s*");
-                StringBuilder sb = new StringBuilder();
-                int addedDeps = 0;
-                for (String d : depArr) {
-                    if (d.trim().isEmpty()) continue;
-                    if (addedDeps < 3) {
-                        addedDeps++;
-                        String[] strs = d.trim().replaceAll("_", " ").split("-");
-                        if (strs.length > 2) {
-                            sb.append("• ").append(strs[strs.length - 2]).append(" - ").append(strs[strs.length - 1]).append("\n");
-                        } else {
-                            sb.append("• ").append(strs[strs.length - 1]).append("\n");
-                        }
+            return embeds;
+        }
+
+        List<Future<MessageEmbed>> forks = new ArrayList<>(unique.size());
+        Tracer.Trace trace = Tracer.current();
+        // close() waits for every forked task, standing in for StructuredTaskScope, which is still a preview in Java 21.
+        try (ExecutorService scope = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (String name : unique.values()) forks.add(scope.submit(() -> Tracer.call(trace, () -> respond(name))));
+        }
+        for (Future<MessageEmbed> fork : forks) {
+            if (fork.state() == Future.State.SUCCESS) addDistinct(embeds, fork.resultNow());
+            else LOGGER.error("Handling a name failed", fork.exceptionNow());
+        }
+        return embeds;
+    }
+
+    private static void addDistinct(List<MessageEmbed> embeds, MessageEmbed embed) {
+        // MessageEmbed has equals but not hashCode, and a message has at most a few names, so a scan it is.
+        for (MessageEmbed e : embeds) if (e.equals(embed)) return;
+        embeds.add(embed);
+    }
+
+    /**
+     * Splits embeds into as few messages as Discord allows: at most Message.MAX_EMBED_COUNT embeds and
+     * MessageEmbed.EMBED_MAX_LENGTH_BOT characters of embed text per message.
+     *
+     * @param embeds The embeds, in order.
+     * @return The embeds of each message, in order.
+     */
+    public static List<List<MessageEmbed>> batches(List<MessageEmbed> embeds) {
+        List<List<MessageEmbed>> batches = new ArrayList<>();
+        List<MessageEmbed> batch = new ArrayList<>();
+        int length = 0;
+        for (MessageEmbed embed : embeds) {
+            if (!batch.isEmpty() && (batch.size() == Message.MAX_EMBED_COUNT || length + embed.getLength() > MessageEmbed.EMBED_MAX_LENGTH_BOT)) {
+                batches.add(batch);
+                batch = new ArrayList<>();
+                length = 0;
+            }
+            batch.add(embed);
+            length += embed.getLength();
+        }
+        if (!batch.isEmpty()) batches.add(batch);
+        return batches;
+    }
+
+    /**
+     * Creates the embed for a {{mod}} name, from QUERY_CACHE if it was resolved against the current index before.
+     *
+     * @param modName The trimmed name from the message.
+     * @return The fully constructed embed.
+     */
+    public static MessageEmbed respond(String modName) {
+        ModIndex idx = index();
+        String key = modName.trim().toLowerCase();
+        Tracer.Trace trace = Tracer.current();
+        long start = trace == null ? 0 : System.nanoTime();
+        QueryCache.Entry entry = QUERY_CACHE.get(key, idx.generation());
+        BotMetrics.QUERIES.increment(entry == null ? "miss" : "hit");
+        if (trace != null) trace.span(entry == null ? "cache.miss" : "cache.hit", modName, start);
+        if (entry == null) {
+            ModResolver.Resolution resolution = ModResolver.resolve(idx, modName);
+            long building = trace == null ? 0 : System.nanoTime();
+            entry = new QueryCache.Entry(idx.generation(), resolution, resolution.found() ? createEmbed(resolution) : null);
+            if (trace != null && entry.embed() != null) trace.span("embed", modName, building);
+            QUERY_CACHE.put(key, entry);
+        }
+        if (entry.embed() != null) return entry.embed();
+        long building = trace == null ? 0 : System.nanoTime();
+        MessageEmbed notFound = createEmbed(entry.resolution().withQuery(modName));
+        if (trace != null) trace.span("embed", modName, building);
+        return notFound;
+    }
+
+    /**
+     * Creates the embed for a resolved name: the mod's embed if a package was found, otherwise the 'not found' embed with any suggestion.
+     *
+     * @param resolution The result of ModResolver.resolve.
+     * @return The fully constructed embed.
+     */
+    public static MessageEmbed createEmbed(ModResolver.Resolution resolution) {
+        if (resolution.found()) {
+            MessageEmbed prerendered = snapshot().embeds().get(resolution.pkg());
+            return prerendered != null ? prerendered : createModEmbed(resolution.pkg());
+        }
+        String title = resolution.kind() == ModResolver.Kind.FUZZY_SUGGEST ? resolution.title() : "";
+        return new EmbedBuilder()
+                .setColor(0x7E0923)
+                .setTitle("Mod Not Found")
+                .setDescription("Could not find a mod named " + resolution.query() + "." +
+                        (title.isEmpty() ? "" : " Did you mean " + title.replaceAll("_", " ") + "?"))
+                .build();
+    }
+
+    /**
+     * Creates the embed of a package, the one createEmbedFromModName has always shown for a found mod.
+     *
+     * @param pkg The package, which must have details.
+     * @return The fully constructed embed.
+     */
+    public static MessageEmbed createModEmbed(ModPackage pkg) {
+        String[] vals = pkg.details().toArray();
+        EmbedBuilder eb = new EmbedBuilder();
+        eb.setColor(0x7E0923);
+        boolean deprecated = Boolean.parseBoolean(vals[3]);
+        if (!deprecated) {
+            eb.setDescription(vals[1]);
+        } else {
+            eb.setDescription(String.format("~~%s~~\n\nThis mod is deprecated. Alternative packages should be used whenever possible.", vals[1]));
+        }
+        eb.setTitle(vals[7].replaceAll("_", " ") + (deprecated ? (vals[7].endsWith(" ") ? "- " : " - ") + "Deprecated" : ""));
+        eb.addField("Version", vals[6], false);
+        String pageLink = "[Page](" + vals[8] + ")";
+        String downloadLink = "[Download](" + vals[0] + ")";
+        String siteLink = "";
+        if (!vals[9].isEmpty()) {
+            String site = URI.create(vals[9]).getHost();
+            if (site.contains("github.com")) {
+                siteLink = "[Github](" + vals[9] + ")";
+            } else {
+                siteLink = "[Website](" + vals[9] + ")";
+            }
+        }
+        eb.addField("Links", pageLink + " | " + downloadLink + (vals[9].isEmpty() ? "" : " | " + siteLink), false);
+        if (!vals[2].isEmpty()) {
+            String[] depArr = vals[2].split("\\s* \\s*");
+            StringBuilder sb = new StringBuilder();
+            int addedDeps = 0;
+            for (String d : depArr) {
+                if (d.trim().isEmpty()) continue;
+                if (addedDeps < 3) {
+                    addedDeps++;
+                    String[] strs = d.trim().replaceAll("_", " ").split("-");
+                    if (strs.length > 2) {
+                        sb.append("• ").append(strs[strs.length - 2]).append(" - ").append(strs[strs.length - 1]).append("\n");
+                    } else {
+                        sb.append("• ").append(strs[strs.length - 1]).append("\n");
                     }
                 }
-                if (addedDeps >= 3) {
-                    sb.append("...");
-                }
-                if (!sb.isEmpty()) {
-                    eb.addField("Dependencies", sb.toString().trim(), true);
-                }
             }
-            eb.addField("Author", vals[4].isEmpty() ? "Unknown" : vals[4].replaceAll("_", " "), false);
-            eb.setThumbnail(vals[5]);
-            return eb.build();
+            if (addedDeps >= 3) {
+                sb.append("...");
+            }
+            if (!sb.isEmpty()) {
+                eb.addField("Dependencies", sb.toString().trim(), true);
+            }
         }
-        return createNotFoundEmbed(modName);
+        eb.addField("Author", vals[4].isEmpty() ? "Unknown" : vals[4].replaceAll("_", " "), false);
+        eb.setThumbnail(vals[5]);
+        return eb.build();
     }
 
     /**
@@ -144,17 +355,7 @@ public class FixerBot {
      * is found, this returns an embed with a suggestion for that mod. If neither of the previous conditions are met, this method returns an embed simply saying "Could not find a mod named {modName}".
      */
     public static MessageEmbed createNotFoundEmbed(String modName) {
-
-        BotUtils.ClosestTitle closest = BotUtils.getClosestTitle(modName);
-        if (!closest.title().isEmpty() && closest.distance() <= 2) {
-            return createEmbedFromModName(closest.title());
-        }
-        return new EmbedBuilder()
-                .setColor(0x7E0923)
-                .setTitle("Mod Not Found")
-                .setDescription("Could not find a mod named " + modName + "." +
-                        (closest.title().isEmpty() ? "" : " Did you mean " + closest.title().replaceAll("_", " ") + "?"))
-                .build();
+        return createEmbed(ModResolver.closest(index(), modName));
     }
 
     /**
@@ -166,43 +367,17 @@ public class FixerBot {
     public static boolean exists(String raw) {
         String want = clean(raw);
         if (want.isEmpty()) return false;
-
-        for (JsonObject m : jsons) {
-            if (clean(m.get("name").getAsString()).equals(want) || clean(m.get("full_name").getAsString()).equals(want))
-                return true;
-
-            if (m.has("full_name") && !m.get("full_name").isJsonNull()) {
-                String full = m.get("full_name").getAsString();
-                int dash = full.indexOf('-');
-                if (dash >= 0) {
-                    String suffix = clean(full.substring(dash + 1));
-                    if (!suffix.isEmpty() && suffix.equals(want)) return true;
-                }
-            }
-
-            if (m.has("versions") && m.get("versions").isJsonArray() && !m.getAsJsonArray("versions").isEmpty()) {
-                JsonObject v = m.getAsJsonArray("versions").get(0).getAsJsonObject();
-                if (clean(v.get("name").getAsString()).equals(want)) return true;
-            }
-
-            String rawName = m.has("name") && !m.get("name").isJsonNull() ? m.get("name").getAsString() : "";
-            if (Arrays.stream(rawName.split("[^A-Za-z0-9]+"))
-                    .map(FixerBot::clean)
-                    .anyMatch(tok -> !tok.isEmpty() && tok.equals(want))) {
-                return true;
-            }
-        }
-        return false;
+        return index().byNormalizedKey(want) != null;
     }
 
     /**
-     * Cleans/normalizes a string.
+     * Cleans/normalizes a string. Done in a single pass by TextNormalizer.clean.
      *
      * @param s The input string.
      * @return The cleaned string, which is the input but all non-alphanumeric characters removed and converted it to lowercase.
      */
     public static String clean(String s) {
-        return s.replaceAll("[^A-Za-z0-9]+", "").toLowerCase();
+        return TextNormalizer.clean(s);
     }
 
     /**
@@ -210,33 +385,89 @@ public class FixerBot {
      */
     public static class MessageListener extends ListenerAdapter {
         /**
-         * Listens for messages and constructs one of two embeds in response asynchronously. Can also respond to {{reloadcache}} by reloading the mod cache manually.
+         * Listens for messages and answers all of their {{...}} asynchronously, in as few replies as possible. Can also respond to {{reloadcache}} by reloading the mod cache manually, and to {{dumptraces}} by writing the Tracer ring buffer to its file.
          *
          * @param event The JDA MessageReceivedEvent instance that this method fetches values from.
          */
         @Override
         public void onMessageReceived(MessageReceivedEvent event) {
+            long received = Tracer.ENABLED ? System.nanoTime() : 0;
             String msg = event.getMessage().getContentRaw();
             Matcher matcher = PATTERN.matcher(msg);
+            long guild = event.isFromGuild() ? event.getGuild().getIdLong() : event.getChannel().getIdLong();
 
-            while (matcher.find()) {
-                String modName = matcher.group(1).trim();
-                WORKER.submit(() -> {
-                    if (modName.replaceAll(" ", "").equalsIgnoreCase("reloadcache")) {
-                        if (event.getMember() != null) {
-                            if (!event.getMember().hasPermission(Permission.MESSAGE_MANAGE)) return;
-                            jsons = ModFetcher.getAllMods();
-                            event.getMessage().reply("Reloaded mod cache.").mentionRepliedUser(false).queue();
-                        }
-                        return;
-                    }
-                    if (exists(modName)) {
-                        event.getMessage().getChannel().sendMessageEmbeds(createEmbedFromModName(modName)).queue();
-                    } else {
-                        event.getMessage().getChannel().sendMessageEmbeds(createNotFoundEmbed(modName)).queue();
-                    }
-                });
+            List<String> names = new ArrayList<>();
+            while (matcher.find()) names.add(matcher.group(1).trim());
+            if (names.isEmpty()) return;
+
+            if (!Tracer.sampled()) {
+                WORKER.submit(guild, () -> answer(event, names));
+                return;
             }
+            Tracer.Trace trace = Tracer.start("guild " + guild + " channel " + event.getChannel().getIdLong() + " " + names, received);
+            trace.span("extract", received);
+            long queued = System.nanoTime();
+            boolean accepted = WORKER.submit(guild, () -> Tracer.run(trace, () -> {
+                trace.span("queue", queued);
+                answer(event, names);
+            }));
+            if (!accepted) {
+                trace.span("rejected", queued);
+                trace.finish();
+            }
+        }
+
+        /**
+         * Answers every {{...}} of a message with as few replies as possible, see respondAll and SendScheduler.
+         *
+         * @param event The event of the message.
+         * @param names The trimmed names between the braces, in order.
+         */
+        public void answer(MessageReceivedEvent event, List<String> names) {
+            List<String> mods = new ArrayList<>(names.size());
+            for (String name : names) {
+                if (command(name) != null) handleCommand(event, name);
+                else mods.add(name);
+            }
+            SENDER.send(event.getChannel(), respondAll(mods));
+        }
+
+        /**
+         * Runs a command given as a {{...}} of a message, {{reloadcache}} or {{dumptraces}}, for guild members who can manage messages.
+         * Anything else is ignored, since mod names are answered through answer.
+         *
+         * @param event   The event of the message.
+         * @param command The trimmed name between the braces.
+         */
+        public void handleCommand(MessageReceivedEvent event, String command) {
+            if (event.getMember() == null || !event.getMember().hasPermission(Permission.MESSAGE_MANAGE)) return;
+            String name = command(command);
+            if ("reloadcache".equals(name)) {
+                publish(ModFetcher.getAllMods(true));
+                event.getMessage().reply("Reloaded mod cache.").mentionRepliedUser(false).queue();
+            } else if ("dumptraces".equals(name)) {
+                String reply;
+                try {
+                    reply = "Wrote " + Tracer.dump() + " traces to " + Tracer.PATH + ".";
+                } catch (IOException e) {
+                    LOGGER.warn("Could not write traces to {}", Tracer.PATH, e);
+                    reply = "Could not write traces.";
+                }
+                event.getMessage().reply(reply).mentionRepliedUser(false).queue();
+            }
+        }
+
+        /**
+         * Tells a command apart from a mod name, ignoring spaces and case.
+         *
+         * @param name The trimmed name between the braces.
+         * @return "reloadcache" or "dumptraces", null if the name isn't a command.
+         */
+        private static String command(String name) {
+            String compact = name.replace(" ", "");
+            if (compact.equalsIgnoreCase("reloadcache")) return "reloadcache";
+            if (compact.equalsIgnoreCase("dumptraces")) return "dumptraces";
+            return null;
         }
     }
 }
\ No newline at end of file
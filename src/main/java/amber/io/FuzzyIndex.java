@@ -0,0 +1,134 @@
+package amber.io;
+
+import java.util.*;
+
+/**
+ * A BK-tree over every distinct lowercase key (name, full_name and first version name) of the packages, built once per cache refresh,
+ * so the closest key to an input can be found by measuring the distance to only a small part of the keys.
+ * <p>
+ * Each child hangs off its parent at its distance to the parent. Levenshtein distance is a metric, so a key within r of the input
+ * can only be under a child whose edge is within r of the input's distance to the parent, and every other child is skipped.
+ */
+public final class FuzzyIndex {
+    private final Node root;
+    private final int size;
+
+    /**
+     * Builds the tree.
+     *
+     * @param packages The packages, in listing order. A key shared by several packages belongs to the first of them.
+     */
+    public FuzzyIndex(List<ModPackage> packages) {
+        Node root = null;
+        Set<String> seen = new HashSet<>();
+        int order = 0;
+        for (ModPackage p : packages) {
+            for (String key : p.lowerKeys()) {
+                if (!seen.add(key)) continue;
+                Node node = new Node(key, p, order++);
+                if (root == null) root = node;
+                else insert(root, node);
+            }
+        }
+        this.root = root;
+        this.size = order;
+    }
+
+    private static void insert(Node root, Node node) {
+        Node at = root;
+        while (true) {
+            int d = Levenshtein.bounded(at.key, node.key, Integer.MAX_VALUE);
+            Node child = at.child(d);
+            if (child == null) {
+                at.put(d, node);
+                return;
+            }
+            at = child;
+        }
+    }
+
+    /**
+     * @return The amount of distinct keys in the tree.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Finds the key closest to an input, the same one BotUtils.getClosestPackage finds by comparing against every key:
+     * the lowest distance, then the shortest key, then the key that comes first in listing order.
+     *
+     * @param want   The trimmed, lowercase input.
+     * @param radius The highest distance of interest.
+     * @return The closest key and its package, null if no key is within radius.
+     */
+    public Match closest(String want, int radius) {
+        if (root == null || radius < 0) return null;
+        Node best = null;
+        int bestDist = radius;
+        int evaluated = 0;
+        Deque<Node> stack = new ArrayDeque<>();
+        stack.push(root);
+        while (!stack.isEmpty()) {
+            Node node = stack.pop();
+            evaluated++;
+            // Past bestDist plus the longest edge, no child can be in range either, so the exact distance isn't needed.
+            int d = Levenshtein.bounded(want, node.key, bestDist + node.maxEdge());
+            if (d <= bestDist && (best == null || d < bestDist || node.beats(best))) {
+                best = node;
+                bestDist = d;
+            }
+            if (node.children == null) continue;
+            int from = Math.max(1, d - bestDist);
+            int to = Math.min(node.maxEdge(), d + bestDist);
+            for (int e = from; e <= to; e++) {
+                Node child = node.children[e];
+                if (child != null) stack.push(child);
+            }
+        }
+        BotMetrics.CANDIDATES.observe(evaluated);
+        return best == null ? null : new Match(bestDist, best.key, best.pkg);
+    }
+
+    /**
+     * The closest key found by closest.
+     *
+     * @param distance The distance from the input to the key.
+     * @param key      The lowercase key.
+     * @param pkg      The first package with that key.
+     */
+    public record Match(int distance, String key, ModPackage pkg) {
+    }
+
+    private static final class Node {
+        final String key;
+        final ModPackage pkg;
+        final int order;
+        Node[] children;
+
+        Node(String key, ModPackage pkg, int order) {
+            this.key = key;
+            this.pkg = pkg;
+            this.order = order;
+        }
+
+        Node child(int distance) {
+            return children == null || distance >= children.length ? null : children[distance];
+        }
+
+        void put(int distance, Node child) {
+            if (children == null) children = new Node[distance + 1];
+            else if (distance >= children.length) children = Arrays.copyOf(children, distance + 1);
+            children[distance] = child;
+        }
+
+        int maxEdge() {
+            return children == null ? 0 : children.length - 1;
+        }
+
+        boolean beats(Node other) {
+            if (key.length() != other.key.length()) return key.length() < other.key.length();
+            return order < other.order;
+        }
+    }
+}
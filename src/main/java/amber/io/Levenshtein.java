@@ -0,0 +1,302 @@
+package amber.io;
+
+/**
+ * Bit-parallel Levenshtein distance (Myers 1999, in Hyyrö's formulation for edit distance), which works out a whole column of the DP table
+ * with a handful of word operations instead of one cell at a time.
+ * The shorter string is the pattern and its positions are the bits of a long, so strings of up to 64 chars take one word per column
+ * and longer ones are split into blocks of 64 that pass their horizontal deltas down to the next block.
+ * <p>
+ * Results are exactly those of the textbook DP in BotUtils.calculateDistance has always used, including its early exit: once every value of a DP row
+ * (the longer string consumed up to a point, against every prefix of the shorter one) is over max, the answer is max + 1.
+ * Row minimums never go down, so that happens exactly when the last row's minimum is over max, which is checked once at the end from the vertical deltas.
+ */
+public final class Levenshtein {
+    private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
+
+    private Levenshtein() {
+    }
+
+    /**
+     * Returns the Levenshtein distance of two strings so long as it's below a given max value.
+     *
+     * @param first  The first string.
+     * @param second The second string.
+     * @param max    A limit on the distance. If the method exceeds this during calculation, it'll stop for efficiency.
+     * @return The Levenshtein distance of the two input strings, or max + 1 if every value of a row went over max.
+     */
+    public static int distance(String first, String second, int max) {
+        if (first.length() < second.length()) return distance(second, first, max);
+        if (second.isEmpty()) return Math.min(first.length(), max + 1);
+        return second.length() <= 64 ? myers(first, second, max) : myersBlocked(first, second, max);
+    }
+
+    /**
+     * Single word Myers for patterns of 1 to 64 chars.
+     *
+     * @param text    The longer string.
+     * @param pattern The shorter string, at most 64 chars.
+     * @param max     The limit on the distance.
+     * @return The same result as distance.
+     */
+    public static int myers(String text, String pattern, int max) {
+        int m = pattern.length();
+        int n = text.length();
+        long[] peq = SCRATCH.get().peq;
+        for (int k = 0; k < m; k++) {
+            char c = pattern.charAt(k);
+            if (c < 128) peq[c] |= 1L << k;
+        }
+
+        long last = 1L << (m - 1);
+        long vp = m == 64 ? -1L : (1L << m) - 1;
+        long vn = 0;
+        int score = m;
+        try {
+            for (int i = 0; i < n; i++) {
+                char c = text.charAt(i);
+                long eq = c < 128 ? peq[c] : peqOf(pattern, 0, m, c);
+                long xv = eq | vn;
+                long xh = (((eq & vp) + vp) ^ vp) | eq;
+                long hp = vn | ~(xh | vp);
+                long hn = vp & xh;
+                if ((hp & last) != 0) score++;
+                else if ((hn & last) != 0) score--;
+                hp = (hp << 1) | 1;
+                hn <<= 1;
+                vp = hn | ~(xv | hp);
+                vn = hp & xv;
+                // Every cell of the column is at least score - m and at least (i + 1) - m, so past either bound the row minimum is over max.
+                if (score - m > max || i + 1 - m > max) return max + 1;
+            }
+        } finally {
+            for (int k = 0; k < m; k++) {
+                char c = pattern.charAt(k);
+                if (c < 128) peq[c] = 0;
+            }
+        }
+
+        if (score <= max) return score;
+        return columnMin(n, vp, vn, m) > max ? max + 1 : score;
+    }
+
+    /**
+     * Blocked Myers for patterns longer than 64 chars.
+     *
+     * @param text    The longer string.
+     * @param pattern The shorter string.
+     * @param max     The limit on the distance.
+     * @return The same result as distance.
+     */
+    public static int myersBlocked(String text, String pattern, int max) {
+        int m = pattern.length();
+        int n = text.length();
+        int blocks = (m + 63) >>> 6;
+        Scratch scratch = SCRATCH.get();
+        long[] peq = scratch.blockPeq(blocks);
+        long[] vp = scratch.vp(blocks);
+        long[] vn = scratch.vn(blocks);
+        for (int k = 0; k < m; k++) {
+            char c = pattern.charAt(k);
+            if (c < 128) peq[c * blocks + (k >>> 6)] |= 1L << (k & 63);
+        }
+        for (int b = 0; b < blocks; b++) {
+            vp[b] = -1L;
+            vn[b] = 0;
+        }
+
+        int lastBlock = blocks - 1;
+        long last = 1L << ((m - 1) & 63);
+        int score = m;
+        try {
+            for (int i = 0; i < n; i++) {
+                char c = text.charAt(i);
+                int hin = 1;
+                for (int b = 0; b < blocks; b++) {
+                    long eq = c < 128 ? peq[c * blocks + b] : peqOf(pattern, b << 6, Math.min(m, (b + 1) << 6), c);
+                    long pv = vp[b];
+                    long mv = vn[b];
+                    long xv = eq | mv;
+                    if (hin < 0) eq |= 1;
+                    long xh = (((eq & pv) + pv) ^ pv) | eq;
+                    long ph = mv | ~(xh | pv);
+                    long mh = pv & xh;
+                    int hout;
+                    if (b == lastBlock) {
+                        hout = (ph & last) != 0 ? 1 : (mh & last) != 0 ? -1 : 0;
+                    } else {
+                        hout = ph < 0 ? 1 : mh < 0 ? -1 : 0;
+                    }
+                    ph <<= 1;
+                    mh <<= 1;
+                    if (hin < 0) mh |= 1;
+                    else if (hin > 0) ph |= 1;
+                    vp[b] = mh | ~(xv | ph);
+                    vn[b] = ph & xv;
+                    hin = hout;
+                }
+                score += hin;
+                if (score - m > max || i + 1 - m > max) return max + 1;
+            }
+        } finally {
+            for (int k = 0; k < m; k++) {
+                char c = pattern.charAt(k);
+                if (c < 128) peq[c * blocks + (k >>> 6)] = 0;
+            }
+        }
+
+        if (score <= max) return score;
+        int min = n;
+        int value = n;
+        for (int b = 0; b < blocks; b++) {
+            int bits = Math.min(64, m - (b << 6));
+            for (int k = 0; k < bits; k++) {
+                if ((vp[b] >>> k & 1) != 0) value++;
+                else if ((vn[b] >>> k & 1) != 0) value--;
+                if (value < min) min = value;
+            }
+        }
+        return min > max ? max + 1 : score;
+    }
+
+    /**
+     * Returns the Levenshtein distance of two strings if it's at most max, for callers that only care whether a distance beats a limit.
+     * Strings whose lengths differ by more than max are over it without any work. A max of 0 or 1 goes through banded, whose band of at most
+     * three diagonals beats a word per column even for short patterns. Otherwise short patterns go through myers, and long ones through banded
+     * when the band of 2 * max + 1 diagonals is narrower than the pattern and blocked myers when it isn't.
+     *
+     * @param first  The first string.
+     * @param second The second string.
+     * @param max    The limit on the distance.
+     * @return The Levenshtein distance if it's at most max, otherwise max + 1.
+     */
+    public static int bounded(String first, String second, int max) {
+        if (first.length() < second.length()) return bounded(second, first, max);
+        int m = second.length();
+        if (first.length() - m > max) return max + 1;
+        int d;
+        if (m == 0) d = first.length();
+        else if (max <= 1) d = banded(first, second, max);
+        else if (m <= 64) d = myers(first, second, max);
+        else if (max < (m - 1) / 2) d = banded(first, second, max);
+        else d = myersBlocked(first, second, max);
+        return d > max ? max + 1 : d;
+    }
+
+    /**
+     * Banded DP (Ukkonen): only the cells within max of the diagonal can be at most max, so only those are worked out,
+     * with the row minimum tracked as the row is filled. Rows come from per thread buffers, so no call allocates.
+     *
+     * @param first  The first string.
+     * @param second The second string.
+     * @param max    The limit on the distance.
+     * @return The Levenshtein distance if it's at most max, otherwise max + 1.
+     */
+    public static int banded(String first, String second, int max) {
+        if (first.length() < second.length()) return banded(second, first, max);
+        int n = first.length();
+        int m = second.length();
+        if (max < 0) return max + 1;
+        if (n - m > max) return max + 1;
+        // The distance is never over n, so a larger max only widens the band for nothing (and max + 1 could overflow).
+        int limit = Math.min(max, n);
+        int big = limit + 1;
+        if (m == 0) return n;
+
+        Scratch scratch = SCRATCH.get();
+        int[] prev = scratch.rowA(m + 1);
+        int[] curr = scratch.rowB(m + 1);
+        int top = Math.min(m, limit);
+        for (int j = 0; j <= top; j++) prev[j] = j;
+        if (top < m) prev[top + 1] = big;
+
+        for (int i = 1; i <= n; i++) {
+            int lo = Math.max(1, i - limit);
+            int hi = Math.min(m, i + limit);
+            int rowMin;
+            if (lo == 1) {
+                curr[0] = Math.min(i, big);
+                rowMin = curr[0];
+            } else {
+                curr[lo - 1] = big;
+                rowMin = big;
+            }
+            char c = first.charAt(i - 1);
+            for (int j = lo; j <= hi; j++) {
+                int v = prev[j - 1] + (c == second.charAt(j - 1) ? 0 : 1);
+                int up = prev[j] + 1;
+                int left = curr[j - 1] + 1;
+                if (up < v) v = up;
+                if (left < v) v = left;
+                if (v > big) v = big;
+                curr[j] = v;
+                if (v < rowMin) rowMin = v;
+            }
+            if (hi < m) curr[hi + 1] = big;
+            if (rowMin > limit) return max + 1;
+            int[] tmp = prev;
+            prev = curr;
+            curr = tmp;
+        }
+        return prev[m] > limit ? max + 1 : prev[m];
+    }
+
+    /**
+     * Walks the vertical deltas of the last column to find its minimum, the minimum of the last DP row.
+     */
+    private static int columnMin(int n, long vp, long vn, int m) {
+        int min = n;
+        int value = n;
+        for (int k = 0; k < m; k++) {
+            if ((vp >>> k & 1) != 0) value++;
+            else if ((vn >>> k & 1) != 0) value--;
+            if (value < min) min = value;
+        }
+        return min;
+    }
+
+    /**
+     * Works out the match mask of a char outside the lookup table by scanning the pattern.
+     */
+    private static long peqOf(String pattern, int from, int to, char c) {
+        long eq = 0;
+        for (int k = from; k < to; k++) if (pattern.charAt(k) == c) eq |= 1L << (k - from);
+        return eq;
+    }
+
+    /**
+     * Per thread tables, so no call allocates. The match tables are cleared after every call.
+     */
+    private static final class Scratch {
+        final long[] peq = new long[128];
+        long[] blockPeq = new long[0];
+        long[] vp = new long[0];
+        long[] vn = new long[0];
+        int[] rowA = new int[0];
+        int[] rowB = new int[0];
+
+        long[] blockPeq(int blocks) {
+            if (blockPeq.length < 128 * blocks) blockPeq = new long[128 * blocks];
+            return blockPeq;
+        }
+
+        long[] vp(int blocks) {
+            if (vp.length < blocks) vp = new long[blocks];
+            return vp;
+        }
+
+        long[] vn(int blocks) {
+            if (vn.length < blocks) vn = new long[blocks];
+            return vn;
+        }
+
+        int[] rowA(int size) {
+            if (rowA.length < size) rowA = new int[size];
+            return rowA;
+        }
+
+        int[] rowB(int size) {
+            if (rowB.length < size) rowB = new int[size];
+            return rowB;
+        }
+    }
+}
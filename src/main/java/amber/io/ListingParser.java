@@ -0,0 +1,210 @@
+package amber.io;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.StringJoiner;
+
+/**
+ * Reads a Thunderstore package listing straight off the stream, one package at a time, keeping only the values ModPackage holds.
+ * Nothing else in the listing is ever turned into a string or a json tree.
+ */
+public class ListingParser {
+
+    /**
+     * Parses a whole listing, which is a json array of packages.
+     *
+     * @param in The decompressed listing. Not closed by this method.
+     * @return The packages in listing order, with ordinals starting at 0.
+     * @throws IOException If the stream can't be read or isn't a valid listing.
+     */
+    public static List<ModPackage> parse(InputStream in) throws IOException {
+        JsonReader reader = new JsonReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        List<ModPackage> packages = new ArrayList<>();
+        try {
+            reader.beginArray();
+            while (reader.hasNext()) {
+                if (reader.peek() == JsonToken.BEGIN_OBJECT) {
+                    packages.add(readPackage(reader, packages.size()));
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endArray();
+        } catch (IllegalStateException | DateTimeParseException e) {
+            // JsonReader throws IllegalStateException when the json is well formed but shaped unlike a listing.
+            throw new IOException("Not a valid package listing", e);
+        }
+        return packages;
+    }
+
+    /**
+     * Reads a single package object.
+     *
+     * @param reader  The reader, positioned at the start of the package object.
+     * @param ordinal The position of the package in the listing.
+     * @return The package.
+     * @throws IOException If the package can't be read.
+     */
+    public static ModPackage readPackage(JsonReader reader, int ordinal) throws IOException {
+        String name = null, fullName = null, description = null, owner = null, namespace = null, author = null;
+        String packageUrl = null, deprecated = null, dateUpdated = null, firstVersionName = null;
+        Version chosen = null, last = null;
+        boolean hasVersions = false;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "name" -> name = readString(reader);
+                case "full_name" -> fullName = readString(reader);
+                case "description" -> description = readString(reader);
+                case "owner" -> owner = readString(reader);
+                case "namespace" -> namespace = readString(reader);
+                case "author" -> author = readString(reader);
+                case "package_url" -> packageUrl = readString(reader);
+                case "is_deprecated" -> deprecated = readString(reader);
+                case "date_updated" -> dateUpdated = readString(reader);
+                case "versions" -> {
+                    if (reader.peek() != JsonToken.BEGIN_ARRAY) {
+                        reader.skipValue();
+                        break;
+                    }
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+                            reader.skipValue();
+                            continue;
+                        }
+                        Version v = readVersion(reader);
+                        if (!hasVersions) firstVersionName = first(v.name);
+                        hasVersions = true;
+                        last = v;
+                        // Same pick as the old stream max: latest date_created among active versions, the earlier one wins a tie.
+                        // Dates are only parsed to compare two active versions, so a malformed one on an inactive version is ignored like before.
+                        if (v.active && (chosen == null || v.created().compareTo(chosen.created()) > 0)) chosen = v;
+                    }
+                    reader.endArray();
+                }
+                default -> reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        ModDetails details = null;
+        if (hasVersions) {
+            Version v = chosen != null ? chosen : last;
+            details = ModDetails.of(
+                    first(v.downloadUrl, v.packageUrl, v.websiteUrl),
+                    first(v.description),
+                    v.dependencies,
+                    first(deprecated),
+                    first(owner, namespace, author),
+                    first(v.icon),
+                    first(v.versionNumber, v.name),
+                    first(v.name),
+                    first(packageUrl),
+                    first(v.websiteUrl));
+        }
+        return ModPackage.of(ordinal, name, fullName, description, dateUpdated, hasVersions ? firstVersionName : null, details);
+    }
+
+    private static Version readVersion(JsonReader reader) throws IOException {
+        Version v = new Version();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "name" -> v.name = readString(reader);
+                case "version_number" -> v.versionNumber = readString(reader);
+                case "description" -> v.description = readString(reader);
+                case "icon" -> v.icon = readString(reader);
+                case "download_url" -> v.downloadUrl = readString(reader);
+                case "package_url" -> v.packageUrl = readString(reader);
+                case "website_url" -> v.websiteUrl = readString(reader);
+                case "is_active" -> {
+                    String active = readString(reader);
+                    v.active = active == null || Boolean.parseBoolean(active);
+                }
+                case "date_created" -> v.createdText = readString(reader);
+                case "dependencies" -> v.dependencies = readDependencies(reader);
+                default -> reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return v;
+    }
+
+    private static String readDependencies(JsonReader reader) throws IOException {
+        if (reader.peek() != JsonToken.BEGIN_ARRAY) {
+            reader.skipValue();
+            return "";
+        }
+        StringJoiner joiner = new StringJoiner(",");
+        reader.beginArray();
+        while (reader.hasNext()) {
+            String dep = readString(reader);
+            if (dep != null && !dep.contains("BepInEx-BepInExPack")) joiner.add(dep);
+        }
+        reader.endArray();
+        return joiner.toString();
+    }
+
+    /**
+     * Reads a primitive the way JsonElement.getAsString would.
+     *
+     * @param reader The reader, positioned at the value.
+     * @return The value as a string, null if it's json null, an object or an array.
+     * @throws IOException If the value can't be read.
+     */
+    public static String readString(JsonReader reader) throws IOException {
+        switch (reader.peek()) {
+            case STRING, NUMBER -> {
+                return reader.nextString();
+            }
+            case BOOLEAN -> {
+                return String.valueOf(reader.nextBoolean());
+            }
+            case NULL -> {
+                reader.nextNull();
+                return null;
+            }
+            default -> {
+                reader.skipValue();
+                return null;
+            }
+        }
+    }
+
+    /**
+     * The streaming counterpart of ModFetcher.first.
+     *
+     * @param values The values to check, in order.
+     * @return The first value that isn't null, an empty string if all are.
+     */
+    public static String first(String... values) {
+        for (String v : values) if (v != null) return v;
+        return "";
+    }
+
+    /**
+     * The values of a single version, only held until the next version replaces it.
+     */
+    private static final class Version {
+        String name, versionNumber, description, icon, downloadUrl, packageUrl, websiteUrl, createdText;
+        String dependencies = "";
+        boolean active = true;
+        OffsetDateTime created;
+
+        OffsetDateTime created() {
+            if (created == null) created = createdText == null ? OffsetDateTime.MIN : OffsetDateTime.parse(createdText);
+            return created;
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package amber.io;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The difference between two indexes, so anything built from the index can be updated by what changed instead of rebuilt from scratch.
+ * EmbedStore and the CHANGE_LISTENERS apply it that way. ModIndex itself isn't: its maps and trees are keyed by listing order,
+ * which a single added package shifts, so the next index is always built in full before the change set is taken.
+ * Packages are matched by ModPackage.identity and count as updated when ModPackage.sameRelease says they aren't the same release.
+ *
+ * @param previous The index before the refresh.
+ * @param next     The index after the refresh.
+ * @param added    The packages of next that previous didn't have.
+ * @param updated  The packages of next that previous had as an older release.
+ * @param removed  The packages of previous that next doesn't have.
+ */
+public record ModChangeSet(ModIndex previous, ModIndex next, List<ModPackage> added, List<ModPackage> updated, List<ModPackage> removed) {
+
+    /**
+     * Compares two indexes.
+     *
+     * @param previous The index before the refresh.
+     * @param next     The index after the refresh.
+     * @return The changes from previous to next.
+     */
+    public static ModChangeSet between(ModIndex previous, ModIndex next) {
+        List<ModPackage> added = new ArrayList<>();
+        List<ModPackage> updated = new ArrayList<>();
+        List<ModPackage> removed = new ArrayList<>();
+        if (previous != next) {
+            for (ModPackage p : next.packages()) {
+                ModPackage old = previous.byIdentity(p.identity());
+                if (old == null) added.add(p);
+                else if (!p.sameRelease(old)) updated.add(p);
+            }
+            for (ModPackage p : previous.packages()) {
+                if (next.byIdentity(p.identity()) == null) removed.add(p);
+            }
+        }
+        return new ModChangeSet(previous, next, List.copyOf(added), List.copyOf(updated), List.copyOf(removed));
+    }
+
+    /**
+     * @return Whether no package was added, updated or removed.
+     */
+    public boolean isEmpty() {
+        return added.isEmpty() && updated.isEmpty() && removed.isEmpty();
+    }
+
+    /**
+     * @return The amount of packages that were added, updated or removed.
+     */
+    public int size() {
+        return added.size() + updated.size() + removed.size();
+    }
+}
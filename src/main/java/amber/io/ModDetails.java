@@ -0,0 +1,112 @@
+package amber.io;
+
+/**
+ * The values of a mod that are shown in its embed, taken from the package and its chosen version.
+ * Either held on the heap by ModDetails.Values or read on demand from a memory-mapped ColumnarModStore.
+ */
+public interface ModDetails {
+    /**
+     * The amount of values, which is also the amount of columns in a ColumnarModStore.
+     */
+    int FIELDS = 10;
+
+    /**
+     * Creates details held on the heap.
+     *
+     * @param downloadUrl  The download link of the chosen version.
+     * @param description  The description of the chosen version.
+     * @param dependencies The dependencies of the chosen version, comma separated, with BepInExPack left out.
+     * @param deprecated   The package's is_deprecated value as a string, empty if it has none.
+     * @param author       The owner of the package.
+     * @param icon         The icon of the chosen version.
+     * @param version      The version number of the chosen version.
+     * @param name         The name of the chosen version.
+     * @param page         The Thunderstore page of the package.
+     * @param website      The website of the chosen version.
+     * @return The details.
+     */
+    static ModDetails of(String downloadUrl, String description, String dependencies, String deprecated,
+                         String author, String icon, String version, String name, String page, String website) {
+        return new Values(downloadUrl, description, dependencies, deprecated, author, icon, version, name, page, website);
+    }
+
+    /**
+     * @return The download link of the chosen version.
+     */
+    String downloadUrl();
+
+    /**
+     * @return The description of the chosen version.
+     */
+    String description();
+
+    /**
+     * @return The dependencies of the chosen version, comma separated, with BepInExPack left out.
+     */
+    String dependencies();
+
+    /**
+     * @return The package's is_deprecated value as a string, empty if it has none.
+     */
+    String deprecated();
+
+    /**
+     * @return The owner of the package.
+     */
+    String author();
+
+    /**
+     * @return The icon of the chosen version.
+     */
+    String icon();
+
+    /**
+     * @return The version number of the chosen version.
+     */
+    String version();
+
+    /**
+     * @return The name of the chosen version.
+     */
+    String name();
+
+    /**
+     * @return The Thunderstore page of the package.
+     */
+    String page();
+
+    /**
+     * @return The website of the chosen version.
+     */
+    String website();
+
+    /**
+     * Gets the values in the order BotUtils.getAllValues has always returned them.
+     *
+     * @return A string[] of the values in this order: downloadUrl, description, dependencies, deprecated, author, icon, latest version, name, thunderstore page, website
+     */
+    default String[] toArray() {
+        return new String[]{
+                downloadUrl(), description(), dependencies(), deprecated(),
+                author(), icon(), version(), name(), page(), website()
+        };
+    }
+
+    /**
+     * Details held on the heap, as parsed from the listing.
+     *
+     * @param downloadUrl  The download link of the chosen version.
+     * @param description  The description of the chosen version.
+     * @param dependencies The dependencies of the chosen version, comma separated, with BepInExPack left out.
+     * @param deprecated   The package's is_deprecated value as a string, empty if it has none.
+     * @param author       The owner of the package.
+     * @param icon         The icon of the chosen version.
+     * @param version      The version number of the chosen version.
+     * @param name         The name of the chosen version.
+     * @param page         The Thunderstore page of the package.
+     * @param website      The website of the chosen version.
+     */
+    record Values(String downloadUrl, String description, String dependencies, String deprecated,
+                  String author, String icon, String version, String name, String page, String website) implements ModDetails {
+    }
+}
@@ -1,15 +1,20 @@
 package amber.io;
 
-import com.google.gson.JsonArray;
-import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
-import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
 
-import java.io.IOException;
+import java.io.*;
+import java.net.HttpURLConnection;
 import java.net.URI;
 import java.net.URL;
-import java.util.ArrayList;
-import java.util.List;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.zip.GZIPInputStream;
 
 /**
@@ -18,39 +23,302 @@ import java.util.zip.GZIPInputStream;
  */
 public class ModFetcher {
     /**
-     * The URL to pull the Thunderstore package list from.
+     * The path of the package listing index on a Thunderstore server.
      */
-    public static final String Url = "https://thunderstore.io/c/hollow-knight-silksong/api/v1/package-listing-index/";
+    public static final String LISTING_PATH = "/c/hollow-knight-silksong/api/v1/package-listing-index/";
     /**
-     * The list to fall back on if an error occurs in getAllMods.
+     * The URL to pull the Thunderstore package list from. The server is https://thunderstore.io unless set with -Dfixerbot.thunderstore,
+     * and this can be reassigned to point refreshes at a stand-in started on any port.
      */
-    public static List<JsonObject> fallbackList = new ArrayList<>();
+    public static volatile String Url = System.getProperty("fixerbot.thunderstore", "https://thunderstore.io") + LISTING_PATH;
+    /**
+     * The index to fall back on if an error occurs in getAllMods.
+     */
+    public static ModIndex fallback = ModIndex.EMPTY;
+    /**
+     * The most chunks downloaded at once.
+     */
+    public static final int CHUNK_THREADS = 4;
+    /**
+     * A bounded pool for downloading and parsing listing chunks concurrently.
+     */
+    public static final ExecutorService CHUNK_POOL = Executors.newFixedThreadPool(CHUNK_THREADS);
+    /**
+     * The ETag and Last-Modified of the listing index as of the last successful refresh, sent back so an unchanged index costs a 304.
+     */
+    public static volatile Validators indexValidators = Validators.NONE;
+    /**
+     * The chunks that make up fallback, in index order.
+     */
+    public static volatile List<Chunk> chunks = List.of();
+    /**
+     * How long to wait for a connection to Thunderstore, in milliseconds. Set with -Dfixerbot.connect.timeout, 10 seconds if unset.
+     */
+    public static final int CONNECT_TIMEOUT = Integer.getInteger("fixerbot.connect.timeout", 10_000);
+    /**
+     * How long to wait on a read from Thunderstore, in milliseconds. Set with -Dfixerbot.read.timeout, 30 seconds if unset.
+     * A stalled index or chunk download fails the refresh, which keeps the previous index, instead of holding getAllMods forever.
+     */
+    public static final int READ_TIMEOUT = Integer.getInteger("fixerbot.read.timeout", 30_000);
 
     /**
-     * Refreshes the cache by calling Thunderstore api. Returns the previous cache if an error occurs.
+     * Refreshes the cache by calling Thunderstore api and building the index of it. Returns the previous index if an error occurs.
+     * Same as getAllMods(false).
      *
-     * @return The list of mods found from the api.
-     */
-    public static List<JsonObject> getAllMods() {
-        List<JsonObject> all = new ArrayList<>();
-        String content;
-        try (GZIPInputStream gzip = new GZIPInputStream(URL.of(URI.create(Url), null).openStream());
-             GZIPInputStream gzip1 = new GZIPInputStream(URL.of(URI.create(new String(gzip.readAllBytes()).split("\"")[1]), null).openStream())
-        ) {
-            content = new String(gzip1.readAllBytes());
-        } catch (IOException e) {
+     * @return The index of mods found from the api.
+     */
+    public static ModIndex getAllMods() {
+        return getAllMods(false);
+    }
+
+    /**
+     * Refreshes the cache by calling Thunderstore api and building the index of it. Returns the previous index if an error occurs.
+     * The listing index is requested conditionally. If it answers 304 or lists the same chunks as last time, nothing is downloaded or parsed
+     * and the previous index is returned as is, so callers can tell an unchanged listing apart by identity.
+     * Chunk urls are content addressed, so a chunk seen before is reused without a request, and a new chunk whose bytes hash the same as a known one
+     * is reused without decompressing it. Everything else is downloaded and parsed at the same time, so a refresh takes about as long as the slowest chunk.
+     *
+     * @param force Whether to forget every validator and chunk and download the whole listing again.
+     * @return The index of mods found from the api.
+     */
+    public static synchronized ModIndex getAllMods(boolean force) {
+        if (force) {
+            indexValidators = Validators.NONE;
+            chunks = List.of();
+        }
+
+        long start = System.nanoTime();
+        List<Chunk> previous = chunks;
+        List<Chunk> fetched;
+        Validators validators;
+        boolean unchanged;
+        try (Response response = request(Url, indexValidators)) {
+            if (response == null) return finish(start, "not_modified", fallback);
+            validators = response.validators();
+            List<String> urls = readChunkUrls(response.body());
+            if (urls.equals(previous.stream().map(Chunk::url).toList())) {
+                indexValidators = validators;
+                return finish(start, "unchanged", fallback);
+            }
+            fetched = fetchChunks(urls, previous);
+            unchanged = fetched.stream().map(Chunk::hash).toList().equals(previous.stream().map(Chunk::hash).toList());
+            if (!unchanged && ColumnarModStore.ENABLED) fetched = ColumnarModStore.mapChunks(fetched);
+        } catch (IOException | RuntimeException e) {
             e.printStackTrace();
-            return fallbackList;
+            return finish(start, "failed", fallback);
+        }
+
+        chunks = fetched;
+        indexValidators = validators;
+        if (unchanged) return finish(start, "unchanged", fallback);
+
+        long indexing = System.nanoTime();
+        ModIndex index = merge(fetched);
+        BotMetrics.REFRESH.observeSince("index", indexing);
+        fallback = index;
+        try {
+            ModSnapshot.write(ModSnapshot.PATH, validators, fetched);
+        } catch (IOException e) {
+            FixerBot.LOGGER.warn("Could not write mod snapshot to {}", ModSnapshot.PATH, e);
         }
+        return finish(start, "changed", index);
+    }
 
-        JsonArray items = JsonParser.parseString(content).getAsJsonArray();
-        for (JsonElement el : items)
-            all.add(el.getAsJsonObject());
+    private static ModIndex finish(long start, String result, ModIndex index) {
+        BotMetrics.REFRESH.observeSince("total", start);
+        BotMetrics.REFRESHES.increment(result);
+        return index;
+    }
 
-        fallbackList = all;
+    /**
+     * Loads the snapshot written by the last successful refresh, so the bot can answer right away and the next refresh only asks for changes.
+     *
+     * @return The index of the snapshot, or fallback if there is no usable snapshot.
+     */
+    public static synchronized ModIndex restore() {
+        ModSnapshot.Snapshot snapshot;
+        List<Chunk> restored;
+        try {
+            snapshot = ModSnapshot.read(ModSnapshot.PATH);
+            if (snapshot == null) return fallback;
+            restored = ColumnarModStore.ENABLED ? ColumnarModStore.mapChunks(snapshot.chunks()) : snapshot.chunks();
+        } catch (IOException e) {
+            FixerBot.LOGGER.warn("Ignoring mod snapshot at {}", ModSnapshot.PATH, e);
+            return fallback;
+        }
+
+        chunks = restored;
+        indexValidators = snapshot.validators();
+        fallback = merge(restored);
+        return fallback;
+    }
+
+    /**
+     * Merges chunks into one index, renumbering package ordinals across them.
+     *
+     * @param chunks The chunks, in index order.
+     * @return The index.
+     */
+    public static ModIndex merge(List<Chunk> chunks) {
+        List<ModPackage> all = new ArrayList<>();
+        for (Chunk chunk : chunks)
+            for (ModPackage p : chunk.packages()) all.add(p.withOrdinal(all.size()));
+        return new ModIndex(all);
+    }
+
+    /**
+     * Reads the listing index, a gzipped json array with the url of every chunk of the listing.
+     *
+     * @param body The gzipped body of the listing index. Not closed by this method.
+     * @return The chunk urls, in order.
+     * @throws IOException If the index can't be read or has no chunks.
+     */
+    public static List<String> readChunkUrls(InputStream body) throws IOException {
+        List<String> urls = new ArrayList<>();
+        JsonReader reader = new JsonReader(new InputStreamReader(new GZIPInputStream(body), StandardCharsets.UTF_8));
+        reader.beginArray();
+        while (reader.hasNext()) {
+            String url = ListingParser.readString(reader);
+            if (url != null && !url.isEmpty()) urls.add(url);
+        }
+        reader.endArray();
+        if (urls.isEmpty()) throw new IOException("Listing index has no chunks");
+        return urls;
+    }
+
+    /**
+     * Gets every chunk on CHUNK_POOL, reusing the ones that haven't changed.
+     *
+     * @param chunkUrls The chunk urls, in order.
+     * @param previous  The chunks of the last successful refresh.
+     * @return The chunks, in index order.
+     * @throws IOException If any chunk can't be downloaded or read. A partial listing is never returned.
+     */
+    public static List<Chunk> fetchChunks(List<String> chunkUrls, List<Chunk> previous) throws IOException {
+        Map<String, Chunk> byUrl = new HashMap<>();
+        Map<String, Chunk> byHash = new HashMap<>();
+        for (Chunk c : previous) {
+            byUrl.put(c.url(), c);
+            byHash.put(c.hash(), c);
+        }
+
+        List<CompletableFuture<Chunk>> futures = new ArrayList<>(chunkUrls.size());
+        for (String url : chunkUrls) {
+            Chunk known = byUrl.get(url);
+            if (known != null) {
+                futures.add(CompletableFuture.completedFuture(known));
+                continue;
+            }
+            futures.add(CompletableFuture.supplyAsync(() -> {
+                try {
+                    return fetchChunk(url, byHash);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }, CHUNK_POOL));
+        }
+
+        List<Chunk> all = new ArrayList<>(futures.size());
+        for (CompletableFuture<Chunk> future : futures) {
+            try {
+                all.add(future.join());
+            } catch (CompletionException e) {
+                futures.forEach(f -> f.cancel(true));
+                if (e.getCause() instanceof UncheckedIOException io) throw io.getCause();
+                throw e;
+            }
+        }
         return all;
     }
 
+    /**
+     * Downloads a single chunk of the listing and parses it, unless its bytes hash the same as a known chunk.
+     *
+     * @param chunkUrl The url of the chunk.
+     * @param byHash   The known chunks by the hash of their bytes.
+     * @return The chunk, with package ordinals starting at 0.
+     * @throws IOException If the chunk can't be downloaded or read.
+     */
+    public static Chunk fetchChunk(String chunkUrl, Map<String, Chunk> byHash) throws IOException {
+        long start = System.nanoTime();
+        byte[] compressed;
+        try (Response response = request(chunkUrl, Validators.NONE)) {
+            compressed = response.body().readAllBytes();
+        }
+        BotMetrics.REFRESH.observeSince("download", start);
+        String hash = sha256(compressed);
+        Chunk known = byHash.get(hash);
+        if (known != null) return new Chunk(chunkUrl, hash, known.packages());
+
+        // The json is parsed as it's inflated, so the time spent inflating is taken out of the parse to tell the two apart.
+        long parsing = System.nanoTime();
+        try (TimedInputStream gzip = new TimedInputStream(new GZIPInputStream(new ByteArrayInputStream(compressed)))) {
+            Chunk chunk = new Chunk(chunkUrl, hash, List.copyOf(ListingParser.parse(gzip)));
+            BotMetrics.REFRESH.observe("decompress", gzip.nanos);
+            BotMetrics.REFRESH.observe("parse", System.nanoTime() - parsing - gzip.nanos);
+            return chunk;
+        }
+    }
+
+    private static final class TimedInputStream extends FilterInputStream {
+        long nanos;
+
+        TimedInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            long start = System.nanoTime();
+            int b = super.read();
+            nanos += System.nanoTime() - start;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            long start = System.nanoTime();
+            int n = super.read(b, off, len);
+            nanos += System.nanoTime() - start;
+            return n;
+        }
+    }
+
+    /**
+     * Sends a GET, conditional if there are validators for it, with CONNECT_TIMEOUT and READ_TIMEOUT.
+     *
+     * @param url        The url to request.
+     * @param validators The validators from the last response of this url.
+     * @return The response, null if the server answered 304 Not Modified.
+     * @throws IOException If the request fails, times out or answers anything other than 200 or 304.
+     */
+    public static Response request(String url, Validators validators) throws IOException {
+        HttpURLConnection con = (HttpURLConnection) URL.of(URI.create(url), null).openConnection();
+        con.setConnectTimeout(CONNECT_TIMEOUT);
+        con.setReadTimeout(READ_TIMEOUT);
+        if (validators.etag() != null) con.setRequestProperty("If-None-Match", validators.etag());
+        if (validators.lastModified() != null) con.setRequestProperty("If-Modified-Since", validators.lastModified());
+
+        int code = con.getResponseCode();
+        if (code == HttpURLConnection.HTTP_NOT_MODIFIED) {
+            con.disconnect();
+            return null;
+        }
+        if (code != HttpURLConnection.HTTP_OK) {
+            con.disconnect();
+            throw new IOException("GET " + url + " answered " + code);
+        }
+        return new Response(con.getInputStream(), new Validators(con.getHeaderField("ETag"), con.getHeaderField("Last-Modified")));
+    }
+
+    private static String sha256(byte[] bytes) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(bytes));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
     /**
      * Takes in a list of json keys and returns the value of the first one that exists.
      *
@@ -62,4 +330,40 @@ public class ModFetcher {
         for (String k : keys) if (o.has(k) && !o.get(k).isJsonNull()) return o.get(k).getAsString();
         return "";
     }
+
+    /**
+     * The validators of a response, sent back on the next request of the same url.
+     *
+     * @param etag         The ETag header, null if there was none.
+     * @param lastModified The Last-Modified header, null if there was none.
+     */
+    public record Validators(String etag, String lastModified) {
+        /**
+         * No validators, which makes the request unconditional.
+         */
+        public static final Validators NONE = new Validators(null, null);
+    }
+
+    /**
+     * A successful response.
+     *
+     * @param body       The body of the response.
+     * @param validators The validators of the response.
+     */
+    public record Response(InputStream body, Validators validators) implements Closeable {
+        @Override
+        public void close() throws IOException {
+            body.close();
+        }
+    }
+
+    /**
+     * A parsed chunk of the listing.
+     *
+     * @param url      The url of the chunk.
+     * @param hash     The SHA-256 of the compressed bytes of the chunk.
+     * @param packages The packages in the chunk, with ordinals starting at 0.
+     */
+    public record Chunk(String url, String hash, List<ModPackage> packages) {
+    }
 }
@@ -0,0 +1,138 @@
+package amber.io;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An immutable index of every mod, built in full once per cache refresh that changed the listing. See ModChangeSet for what is updated incrementally.
+ * Holds the packages in listing order, plus hash maps from the names lookups compare against to the first package with that name,
+ * a FuzzyIndex over the lowercase keys for closest match lookups and a TrigramIndex over the names and descriptions for contains lookups.
+ */
+public final class ModIndex {
+    private static final AtomicLong GENERATIONS = new AtomicLong();
+    /**
+     * The index used before the first refresh finishes.
+     */
+    public static final ModIndex EMPTY = new ModIndex(List.of());
+
+    private final long generation = GENERATIONS.incrementAndGet();
+
+    private final List<ModPackage> packages;
+    private final Map<String, ModPackage> byLowerName;
+    private final Map<String, ModPackage> byCleanName;
+    private final Map<String, ModPackage> byNormalizedKey;
+    private final Map<String, ModPackage> byIdentity;
+    private final FuzzyIndex fuzzy;
+    private final TrigramIndex trigrams;
+
+    /**
+     * Builds the index.
+     *
+     * @param packages The packages, in listing order, with ordinals matching their position.
+     */
+    public ModIndex(List<ModPackage> packages) {
+        this.packages = List.copyOf(packages);
+        this.byLowerName = new HashMap<>(packages.size() * 2);
+        this.byCleanName = new HashMap<>(packages.size() * 2);
+        this.byNormalizedKey = new HashMap<>(packages.size() * 8);
+        this.byIdentity = new HashMap<>(packages.size() * 2);
+        for (ModPackage p : this.packages) {
+            if (p.lowerName() != null) byLowerName.putIfAbsent(p.lowerName(), p);
+            if (p.cleanName() != null) byCleanName.putIfAbsent(p.cleanName(), p);
+            for (String k : p.normalizedKeys()) byNormalizedKey.putIfAbsent(k, p);
+            byIdentity.putIfAbsent(p.identity(), p);
+        }
+        this.fuzzy = new FuzzyIndex(this.packages);
+        this.trigrams = new TrigramIndex(this.packages);
+    }
+
+    /**
+     * @return A number no other index has, which cached results are tagged with.
+     */
+    public long generation() {
+        return generation;
+    }
+
+    /**
+     * @return Every package, in listing order.
+     */
+    public List<ModPackage> packages() {
+        return packages;
+    }
+
+    /**
+     * @return The amount of packages.
+     */
+    public int size() {
+        return packages.size();
+    }
+
+    /**
+     * @return Whether there are no packages.
+     */
+    public boolean isEmpty() {
+        return packages.isEmpty();
+    }
+
+    /**
+     * Finds the first package whose trimmed, lowercase name is the given value.
+     *
+     * @param lowerName The trimmed, lowercase name.
+     * @return The package, null if there is none.
+     */
+    public ModPackage byLowerName(String lowerName) {
+        return byLowerName.get(lowerName);
+    }
+
+    /**
+     * Finds the first package whose cleaned name is the given value.
+     *
+     * @param cleanName The cleaned name.
+     * @return The package, null if there is none.
+     */
+    public ModPackage byCleanName(String cleanName) {
+        return byCleanName.get(cleanName);
+    }
+
+    /**
+     * Finds the first package that has the given value as one of its normalized keys (name, full_name, full_name without the owner, first version name or a name token).
+     *
+     * @param cleanKey The cleaned key.
+     * @return The package, null if there is none.
+     */
+    public ModPackage byNormalizedKey(String cleanKey) {
+        return byNormalizedKey.get(cleanKey);
+    }
+
+    /**
+     * Finds the package with the given identity.
+     *
+     * @param identity The full_name of the package, see ModPackage.identity.
+     * @return The package, null if there is none.
+     */
+    public ModPackage byIdentity(String identity) {
+        return byIdentity.get(identity);
+    }
+
+    /**
+     * Finds the lowercase key closest to an input, see FuzzyIndex.closest.
+     *
+     * @param want   The trimmed, lowercase input.
+     * @param radius The highest distance of interest.
+     * @return The closest key and its package, null if no key is within radius.
+     */
+    public FuzzyIndex.Match closest(String want, int radius) {
+        return fuzzy.closest(want, radius);
+    }
+
+    /**
+     * Finds the first package whose lowercase name or description contains a value, see TrigramIndex.firstContaining.
+     *
+     * @param wantLower The value wanted, in lowercase.
+     * @param limit     Only packages with an ordinal below this are checked.
+     * @return The package, null if none before limit contains the value.
+     */
+    public ModPackage firstContaining(String wantLower, int limit) {
+        return trigrams.firstContaining(wantLower, limit);
+    }
+}
@@ -0,0 +1,130 @@
+package amber.io;
+
+import java.util.*;
+
+/**
+ * A single Thunderstore package, reduced to the values the bot reads, along with its names precomputed in the forms lookups compare against.
+ *
+ * @param ordinal          The position of the package in the listing. Lookups that return the first match go by this.
+ * @param name             The package name, null if the package has none.
+ * @param fullName         The package full_name (owner-name), null if the package has none.
+ * @param description      The package level description, null if the package has none.
+ * @param dateUpdated      The package date_updated, null if the package has none.
+ * @param keys             The values of name, full_name and the first version's name, same as BotUtils.getKeys has always returned.
+ * @param details          The values shown in the embed, null if the package has no versions.
+ * @param lowerName        The name trimmed and in lowercase, null if the package has no name.
+ * @param cleanName        The name cleaned with FixerBot.clean, null if the package has no name.
+ * @param lowerKeys        The non-empty keys trimmed and in lowercase, in the same order as keys.
+ * @param normalizedKeys   Every cleaned form FixerBot.exists accepts for this package.
+ */
+public record ModPackage(int ordinal, String name, String fullName, String description, String dateUpdated, List<String> keys, ModDetails details,
+                         String lowerName, String cleanName, List<String> lowerKeys, Set<String> normalizedKeys) {
+
+    /**
+     * Creates a package and precomputes its lookup forms.
+     *
+     * @param ordinal          The position of the package in the listing.
+     * @param name             The package name, or null.
+     * @param fullName         The package full_name, or null.
+     * @param description      The package level description, or null.
+     * @param dateUpdated      The package date_updated, or null.
+     * @param firstVersionName The name of the first listed version, null if there are no versions.
+     * @param details          The values shown in the embed, null if there are no versions.
+     * @return The package.
+     */
+    public static ModPackage of(int ordinal, String name, String fullName, String description, String dateUpdated, String firstVersionName, ModDetails details) {
+        List<String> keys = new ArrayList<>(3);
+        keys.add(Objects.toString(name, ""));
+        keys.add(Objects.toString(fullName, ""));
+        if (firstVersionName != null) keys.add(firstVersionName);
+
+        List<String> lowerKeys = new ArrayList<>(3);
+        for (String k : keys) {
+            String lk = k.trim().toLowerCase();
+            if (!lk.isEmpty()) lowerKeys.add(lk);
+        }
+
+        String cleanName = name == null ? null : FixerBot.clean(name);
+        Set<String> normalized = new LinkedHashSet<>();
+        if (name != null) normalized.add(cleanName);
+        if (fullName != null) {
+            normalized.add(FixerBot.clean(fullName));
+            int dash = fullName.indexOf('-');
+            if (dash >= 0) normalized.add(FixerBot.clean(fullName.substring(dash + 1)));
+        }
+        if (firstVersionName != null) normalized.add(FixerBot.clean(firstVersionName));
+        if (name != null) {
+            normalized.addAll(TextNormalizer.tokens(name));
+        }
+        normalized.remove("");
+
+        return new ModPackage(ordinal, name, fullName, description, dateUpdated, List.copyOf(keys), details,
+                name == null ? null : name.trim().toLowerCase(),
+                cleanName,
+                List.copyOf(lowerKeys), Set.copyOf(normalized));
+    }
+
+    /**
+     * Gets the description in lowercase. Computed on every call instead of kept, since descriptions are the bulk of a package.
+     * Only the TrigramIndex calls this, once per package while it's built; lookups check descriptions with nameOrDescriptionContains.
+     *
+     * @return The description in lowercase, null if the package has no description.
+     */
+    public String lowerDescription() {
+        return description == null ? null : description.toLowerCase();
+    }
+
+    /**
+     * Checks if the name or description contains a value, the same check BotUtils.findByTitle has always done on the json.
+     * The description is compared with TextNormalizer.containsLowercase, so no lowercase copy of it is made.
+     *
+     * @param wantLower The value wanted, in lowercase.
+     * @return Whether the name or description contains the value.
+     */
+    public boolean nameOrDescriptionContains(String wantLower) {
+        if (lowerName != null && lowerName.contains(wantLower)) return true;
+        return description != null && TextNormalizer.containsLowercase(description, wantLower);
+    }
+
+    /**
+     * Gets a copy of this package at another position, used when chunks of the listing are merged.
+     *
+     * @param newOrdinal The new position.
+     * @return The package at the new position, or this one if the position doesn't change.
+     */
+    public ModPackage withOrdinal(int newOrdinal) {
+        if (newOrdinal == ordinal) return this;
+        return new ModPackage(newOrdinal, name, fullName, description, dateUpdated, keys, details, lowerName, cleanName, lowerKeys, normalizedKeys);
+    }
+
+    /**
+     * Gets a copy of this package with its details held somewhere else, used when they're moved into a ColumnarModStore.
+     *
+     * @param newDetails The new details, with the same values.
+     * @return The package with the new details.
+     */
+    public ModPackage withDetails(ModDetails newDetails) {
+        return new ModPackage(ordinal, name, fullName, description, dateUpdated, keys, newDetails, lowerName, cleanName, lowerKeys, normalizedKeys);
+    }
+
+    /**
+     * Gets the value packages are matched by when two listings are compared.
+     *
+     * @return The full_name, or the name if the package has no full_name.
+     */
+    public String identity() {
+        return fullName != null ? fullName : Objects.toString(name, "");
+    }
+
+    /**
+     * Checks if this package is the same release as another one of the same identity, going by the latest version number and date_updated.
+     *
+     * @param other The package from the other listing.
+     * @return Whether neither the version number nor date_updated changed.
+     */
+    public boolean sameRelease(ModPackage other) {
+        String version = details == null ? null : details.version();
+        String otherVersion = other.details == null ? null : other.details.version();
+        return Objects.equals(version, otherVersion) && Objects.equals(dateUpdated, other.dateUpdated);
+    }
+}
@@ -0,0 +1,171 @@
+package amber.io;
+
+/**
+ * Resolves a {{mod}} name to the package to show in a single pass over one index, in the order the bot has always tried:
+ * a normalized key check, the name lookup of BotUtils.findByTitle, then the closest name of BotUtils.getClosestPackage.
+ * The result says which of these matched, so the embed builders don't have to resolve the name again.
+ */
+public final class ModResolver {
+    private ModResolver() {
+    }
+
+    /**
+     * Resolves a name against the current index, the same way the bot has always picked between createEmbedFromModName and createNotFoundEmbed.
+     *
+     * @param query The trimmed name from the message.
+     * @return The result, never null.
+     */
+    public static Resolution resolve(String query) {
+        return resolve(FixerBot.index(), query);
+    }
+
+    /**
+     * Resolves a name against an index.
+     *
+     * @param idx   The index to resolve against.
+     * @param query The trimmed name from the message.
+     * @return The result, never null.
+     */
+    public static Resolution resolve(ModIndex idx, String query) {
+        Tracer.Trace trace = Tracer.current();
+        long start = System.nanoTime();
+        Resolution r = null;
+        String clean = FixerBot.clean(query);
+        boolean exists = !clean.isEmpty() && idx.byNormalizedKey(clean) != null;
+        if (trace != null) trace.span("resolve.exists", query, start);
+        if (exists) {
+            long stage = trace == null ? 0 : System.nanoTime();
+            r = byTitle(idx, query);
+            if (trace != null) trace.span("resolve.findByTitle", query, stage);
+        }
+        if (r == null) {
+            long stage = trace == null ? 0 : System.nanoTime();
+            r = closest(idx, query);
+            if (trace != null) trace.span("resolve.getClosestPackage", query, stage);
+        }
+        BotMetrics.RESOLVE.observeSince(r.kind().name().toLowerCase(), start);
+        return r;
+    }
+
+    /**
+     * Looks a name up the way createEmbedFromModName always has, through BotUtils.findByTitle on the cleaned name.
+     *
+     * @param idx  The index to look in.
+     * @param name The name.
+     * @return An EXACT, NORMALIZED, TOKEN or SUBSTRING result, null if no package with details was found.
+     */
+    public static Resolution byTitle(ModIndex idx, String name) {
+        Resolution r = find(idx, FixerBot.clean(name));
+        if (r == null || r.pkg().details() == null) return null;
+        return new Resolution(r.kind(), name, r.pkg(), name, 0);
+    }
+
+    /**
+     * Looks for the closest name the way createNotFoundEmbed always has. A match within a distance of 2 is looked up by its title and shown,
+     * anything else is suggested.
+     * When the accepted title can't be looked up, createNotFoundEmbed used to recurse between the two embed methods until the stack ran out.
+     * That match is suggested instead.
+     *
+     * @param idx   The index to look in.
+     * @param query The name that wasn't found.
+     * @return A FUZZY_ACCEPT, FUZZY_SUGGEST or NONE result.
+     */
+    public static Resolution closest(ModIndex idx, String query) {
+        BotUtils.ClosestPackage closest = BotUtils.getClosestPackage(idx, query);
+        String title = closest == null ? "" : BotUtils.getTitle(closest.pkg());
+        if (title.isEmpty()) return new Resolution(Kind.NONE, query, null, "", 0);
+        if (closest.distance() <= 2) {
+            Resolution r = byTitle(idx, title);
+            if (r != null) return new Resolution(Kind.FUZZY_ACCEPT, query, r.pkg(), title, closest.distance());
+        }
+        return new Resolution(Kind.FUZZY_SUGGEST, query, closest.pkg(), title, closest.distance());
+    }
+
+    /**
+     * BotUtils.findByTitle, telling which lookup found the package.
+     *
+     * @param idx   The index to look in.
+     * @param title The name of the mod.
+     * @return The result, null if no package matched.
+     */
+    public static Resolution find(ModIndex idx, String title) {
+        if (title == null) return null;
+        String want = title.trim().toLowerCase();
+        String normWant = FixerBot.clean(title);
+
+        ModPackage lower = idx.byLowerName(want);
+        ModPackage clean = idx.byCleanName(normWant);
+        ModPackage hit = lower;
+        if (clean != null && (hit == null || clean.ordinal() < hit.ordinal())) hit = clean;
+
+        ModPackage contains = idx.firstContaining(want, hit == null ? idx.size() : hit.ordinal());
+        if (contains != null) {
+            boolean token = contains.name() != null && TextNormalizer.tokens(contains.name()).contains(normWant);
+            return new Resolution(token ? Kind.TOKEN : Kind.SUBSTRING, title, contains, title, 0);
+        }
+        if (hit == null) return null;
+        return new Resolution(hit == lower ? Kind.EXACT : Kind.NORMALIZED, title, hit, title, 0);
+    }
+
+    /**
+     * How a name was resolved.
+     */
+    public enum Kind {
+        /**
+         * The lowercase name of a package is the name.
+         */
+        EXACT,
+        /**
+         * The cleaned name of a package is the cleaned name.
+         */
+        NORMALIZED,
+        /**
+         * A package listed before any exact or normalized match contains the name in its name, as one of its name tokens.
+         */
+        TOKEN,
+        /**
+         * A package listed before any exact or normalized match contains the name somewhere in its name or description.
+         */
+        SUBSTRING,
+        /**
+         * Nothing matched, but a package's title was within a distance of 2 and is shown.
+         */
+        FUZZY_ACCEPT,
+        /**
+         * Nothing matched, and the closest acceptable package's title is suggested.
+         */
+        FUZZY_SUGGEST,
+        /**
+         * Nothing matched or came close.
+         */
+        NONE
+    }
+
+    /**
+     * The result of resolving a name.
+     *
+     * @param kind     How the name was resolved.
+     * @param query    The name that was resolved.
+     * @param pkg      The package to show or suggest, null for NONE.
+     * @param title    The title a FUZZY result matched, otherwise the name looked up.
+     * @param distance The distance from the query to a FUZZY title, otherwise 0.
+     */
+    public record Resolution(Kind kind, String query, ModPackage pkg, String title, int distance) {
+        /**
+         * @return Whether there's a package to show, rather than a not found embed.
+         */
+        public boolean found() {
+            return kind != Kind.FUZZY_SUGGEST && kind != Kind.NONE;
+        }
+
+        /**
+         * Gets the same result for another spelling of the query, used by QueryCache hits.
+         *
+         * @param query The name as it was typed.
+         * @return The result with that query.
+         */
+        public Resolution withQuery(String query) {
+            return query.equals(this.query) ? this : new Resolution(kind, query, pkg, title, distance);
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package amber.io;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.zip.CRC32;
+
+/**
+ * Saves the last refreshed listing to a local file and reads it back on startup, so the bot can answer before the first refresh finishes
+ * and the first refresh after a restart can still be a 304.
+ * <p>
+ * The file is a header (magic int, format version int, CRC32 of the payload as an int, payload length as a long), all big-endian, followed by the payload:
+ * a table of every distinct string, then the index validators and every chunk with its packages, with strings written as indexes into the table.
+ */
+public class ModSnapshot {
+    /**
+     * The first four bytes of every snapshot, "FXBS".
+     */
+    public static final int MAGIC = 0x46584253;
+    /**
+     * The format version. Snapshots of any other version are ignored.
+     */
+    public static final int VERSION = 1;
+    /**
+     * Where the snapshot is kept, from the fixerbot.snapshot system property.
+     */
+    public static final Path PATH = Path.of(System.getProperty("fixerbot.snapshot", "mods.snapshot"));
+
+    private static final int HEADER_BYTES = 4 + 4 + 4 + 8;
+
+    /**
+     * Writes a snapshot, replacing the old one only once the new one is fully written.
+     *
+     * @param path       The file to write.
+     * @param validators The validators of the listing index.
+     * @param chunks     The chunks of the listing, in index order.
+     * @throws IOException If the file can't be written.
+     */
+    public static void write(Path path, ModFetcher.Validators validators, List<ModFetcher.Chunk> chunks) throws IOException {
+        StringTable table = new StringTable();
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(body);
+
+        out.writeInt(table.id(validators.etag()));
+        out.writeInt(table.id(validators.lastModified()));
+        out.writeInt(chunks.size());
+        for (ModFetcher.Chunk chunk : chunks) {
+            out.writeInt(table.id(chunk.url()));
+            out.writeInt(table.id(chunk.hash()));
+            out.writeInt(chunk.packages().size());
+            for (ModPackage p : chunk.packages()) writePackage(out, table, p);
+        }
+        out.flush();
+
+        ByteArrayOutputStream strings = new ByteArrayOutputStream();
+        DataOutputStream stringsOut = new DataOutputStream(strings);
+        stringsOut.writeInt(table.size());
+        for (String s : table.strings()) {
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            stringsOut.writeInt(bytes.length);
+            stringsOut.write(bytes);
+        }
+        stringsOut.flush();
+
+        CRC32 crc = new CRC32();
+        crc.update(strings.toByteArray());
+        crc.update(body.toByteArray());
+
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (DataOutputStream file = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+            file.writeInt(MAGIC);
+            file.writeInt(VERSION);
+            file.writeInt((int) crc.getValue());
+            file.writeLong(strings.size() + body.size());
+            strings.writeTo(file);
+            body.writeTo(file);
+        }
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Maps a snapshot and reads it back.
+     *
+     * @param path The file to read.
+     * @return The snapshot, null if there is no file or it's of another version.
+     * @throws IOException If the file can't be read, is cut short or fails its checksum.
+     */
+    public static Snapshot read(Path path) throws IOException {
+        if (!Files.isRegularFile(path)) return null;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buf.remaining() < HEADER_BYTES || buf.getInt() != MAGIC) throw new IOException(path + " is not a mod snapshot");
+            if (buf.getInt() != VERSION) return null;
+            int checksum = buf.getInt();
+            long length = buf.getLong();
+            if (length != buf.remaining()) throw new IOException(path + " is cut short");
+
+            CRC32 crc = new CRC32();
+            crc.update(buf.duplicate());
+            if ((int) crc.getValue() != checksum) throw new IOException(path + " failed its checksum");
+
+            try {
+                String[] strings = readStrings(buf);
+                ModFetcher.Validators validators = new ModFetcher.Validators(string(buf, strings), string(buf, strings));
+                int chunkCount = buf.getInt();
+                List<ModFetcher.Chunk> chunks = new ArrayList<>(chunkCount);
+                for (int c = 0; c < chunkCount; c++) {
+                    String url = string(buf, strings);
+                    String hash = string(buf, strings);
+                    int count = buf.getInt();
+                    List<ModPackage> packages = new ArrayList<>(count);
+                    for (int i = 0; i < count; i++) packages.add(readPackage(buf, strings, i));
+                    chunks.add(new ModFetcher.Chunk(url, hash, List.copyOf(packages)));
+                }
+                return new Snapshot(validators, List.copyOf(chunks));
+            } catch (RuntimeException e) {
+                throw new IOException(path + " is malformed", e);
+            }
+        }
+    }
+
+    private static void writePackage(DataOutputStream out, StringTable table, ModPackage p) throws IOException {
+        out.writeInt(table.id(p.name()));
+        out.writeInt(table.id(p.fullName()));
+        out.writeInt(table.id(p.description()));
+        out.writeInt(table.id(p.dateUpdated()));
+        out.writeInt(table.id(p.keys().size() > 2 ? p.keys().get(2) : null));
+        ModDetails d = p.details();
+        out.writeBoolean(d != null);
+        if (d == null) return;
+        for (String v : d.toArray()) out.writeInt(table.id(v));
+    }
+
+    private static ModPackage readPackage(ByteBuffer buf, String[] strings, int ordinal) {
+        String name = string(buf, strings);
+        String fullName = string(buf, strings);
+        String description = string(buf, strings);
+        String dateUpdated = string(buf, strings);
+        String firstVersionName = string(buf, strings);
+        ModDetails details = null;
+        if (buf.get() != 0) {
+            details = ModDetails.of(string(buf, strings), string(buf, strings), string(buf, strings), string(buf, strings), string(buf, strings),
+                    string(buf, strings), string(buf, strings), string(buf, strings), string(buf, strings), string(buf, strings));
+        }
+        return ModPackage.of(ordinal, name, fullName, description, dateUpdated, firstVersionName, details);
+    }
+
+    private static String[] readStrings(ByteBuffer buf) {
+        String[] strings = new String[buf.getInt()];
+        for (int i = 0; i < strings.length; i++) {
+            byte[] bytes = new byte[buf.getInt()];
+            buf.get(bytes);
+            strings[i] = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return strings;
+    }
+
+    private static String string(ByteBuffer buf, String[] strings) {
+        int id = buf.getInt();
+        return id < 0 ? null : strings[id];
+    }
+
+    /**
+     * The contents of a snapshot.
+     *
+     * @param validators The validators of the listing index.
+     * @param chunks     The chunks of the listing, in index order.
+     */
+    public record Snapshot(ModFetcher.Validators validators, List<ModFetcher.Chunk> chunks) {
+    }
+}
@@ -0,0 +1,113 @@
+package amber.io;
+
+import net.dv8tion.jda.api.entities.MessageEmbed;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded cache of resolved {{mod}} names and their embeds, keyed by the trimmed, lowercase name.
+ * Segmented LRU: a new entry starts in the probation segment and moves to the protected segment when it's asked for again,
+ * so a burst of one-off names only pushes out other one-off names and never the popular ones.
+ * <p>
+ * Every entry is tagged with the generation of the index it was resolved against, and only counts as a hit against that same index,
+ * so a refresh or {{reloadcache}} invalidates every entry at once by publishing a new index. Not found results are cached too.
+ */
+public final class QueryCache {
+    /**
+     * The highest amount of entries, from the fixerbot.querycache system property. 0 turns the cache off.
+     */
+    public static final int CAPACITY = Integer.getInteger("fixerbot.querycache", 1024);
+
+    private final int protectedCapacity;
+    private final int probationCapacity;
+    private final LinkedHashMap<String, Entry> probation = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<String, Entry> protectedSegment = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * Creates a cache.
+     *
+     * @param capacity The highest amount of entries, of which four fifths can be protected.
+     */
+    public QueryCache(int capacity) {
+        this.protectedCapacity = capacity * 4 / 5;
+        this.probationCapacity = capacity - protectedCapacity;
+    }
+
+    /**
+     * Gets the cached entry for a name, promoting it to the protected segment.
+     *
+     * @param key        The trimmed, lowercase name.
+     * @param generation The generation of the current index.
+     * @return The entry, null if there is none for this generation.
+     */
+    public synchronized Entry get(String key, long generation) {
+        Entry e = protectedSegment.get(key);
+        if (e != null) {
+            if (e.generation() == generation) return e;
+            protectedSegment.remove(key);
+            return null;
+        }
+        e = probation.remove(key);
+        if (e == null || e.generation() != generation) return null;
+        if (protectedCapacity == 0) {
+            probation.put(key, e);
+            return e;
+        }
+        protectedSegment.put(key, e);
+        if (protectedSegment.size() > protectedCapacity) {
+            Iterator<Map.Entry<String, Entry>> it = protectedSegment.entrySet().iterator();
+            Map.Entry<String, Entry> eldest = it.next();
+            it.remove();
+            admit(eldest.getKey(), eldest.getValue());
+        }
+        return e;
+    }
+
+    /**
+     * Caches an entry in the probation segment.
+     *
+     * @param key   The trimmed, lowercase name.
+     * @param entry The entry.
+     */
+    public synchronized void put(String key, Entry entry) {
+        if (probationCapacity + protectedCapacity == 0) return;
+        if (protectedSegment.containsKey(key)) protectedSegment.put(key, entry);
+        else admit(key, entry);
+    }
+
+    private void admit(String key, Entry entry) {
+        probation.put(key, entry);
+        if (probation.size() > Math.max(1, probationCapacity)) {
+            Iterator<String> it = probation.keySet().iterator();
+            it.next();
+            it.remove();
+        }
+    }
+
+    /**
+     * Drops every entry. Entries of an old generation never hit anyway, this only frees them sooner.
+     */
+    public synchronized void clear() {
+        probation.clear();
+        protectedSegment.clear();
+    }
+
+    /**
+     * @return The amount of entries.
+     */
+    public synchronized int size() {
+        return probation.size() + protectedSegment.size();
+    }
+
+    /**
+     * A cached result.
+     *
+     * @param generation The generation of the index the name was resolved against.
+     * @param resolution The result of ModResolver.resolve.
+     * @param embed      The embed of a found package, null for a not found result, whose embed names the query as it was typed.
+     */
+    public record Entry(long generation, ModResolver.Resolution resolution, MessageEmbed embed) {
+    }
+}
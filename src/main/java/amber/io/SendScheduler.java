@@ -0,0 +1,243 @@
+package amber.io;
+
+import net.dv8tion.jda.api.entities.MessageEmbed;
+import net.dv8tion.jda.api.entities.channel.middleman.MessageChannel;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sends answers to a channel through one queue per channel instead of a REST call per answer.
+ * Embeds for a channel wait a short window for others to join them, then go out together in as few messages as FixerBot.batches allows.
+ * A channel has at most one send in flight, and whatever arrives meanwhile goes out in the next one as soon as it completes,
+ * so a channel stalled on its rate limit bucket collects its answers instead of queueing more requests behind it.
+ * An embed that is already waiting, or was sent to the same channel within the duplicate window, is dropped.
+ * The Tracer trace of the message embeds came from is finished once the send carrying the last of them completes.
+ * A channel's queue is dropped once it has nothing pending or in flight and its last send is past the duplicate window, so channels the bot
+ * answered once don't stay around for good.
+ * <p>
+ * Configured with system properties: fixerbot.send.window (default 250 ms) and fixerbot.send.duplicate (default 5000 ms).
+ */
+public final class SendScheduler {
+    private final long windowMillis;
+    private final long duplicateMillis;
+    private final ScheduledExecutorService timer;
+    private final Map<Long, ChannelQueue> channels = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a scheduler with its own timer thread.
+     *
+     * @param windowMillis    How long the first embed for an idle channel waits for others.
+     * @param duplicateMillis How long an embed sent to a channel isn't sent to it again.
+     */
+    public SendScheduler(long windowMillis, long duplicateMillis) {
+        this.windowMillis = windowMillis;
+        this.duplicateMillis = duplicateMillis;
+        this.timer = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().name("FixerBot-sender").daemon().factory());
+    }
+
+    /**
+     * Creates a scheduler configured by the system properties listed on the class.
+     *
+     * @return The scheduler.
+     */
+    public static SendScheduler fromProperties() {
+        return new SendScheduler(Long.getLong("fixerbot.send.window", 250), Long.getLong("fixerbot.send.duplicate", 5000));
+    }
+
+    /**
+     * Queues embeds for a channel.
+     *
+     * @param channel The channel to send to.
+     * @param embeds  The embeds, in order.
+     */
+    public void send(MessageChannel channel, List<MessageEmbed> embeds) {
+        Tracer.Trace trace = Tracer.current();
+        long enqueued = trace == null ? 0 : System.nanoTime();
+        if (embeds.isEmpty()) {
+            if (trace != null) trace.finish();
+            return;
+        }
+        while (true) {
+            ChannelQueue queue = channels.computeIfAbsent(channel.getIdLong(), id -> new ChannelQueue(channel));
+            boolean suppressed = false;
+            boolean schedule;
+            synchronized (queue) {
+                // Evicted between the lookup and the lock, so it's no longer in channels and a fresh queue has to be used.
+                if (queue.evicted) continue;
+                long now = System.currentTimeMillis();
+                queue.prune(now - duplicateMillis);
+                long before = queue.added;
+                for (MessageEmbed embed : embeds) {
+                    if (!queue.isDuplicate(embed)) {
+                        queue.pending.add(embed);
+                        queue.added++;
+                    }
+                }
+                if (trace != null) {
+                    if (queue.added > before) queue.traces.add(new Waiting(trace, enqueued, queue.added));
+                    else suppressed = true;
+                }
+                schedule = !queue.pending.isEmpty() && !queue.scheduled && !queue.inFlight;
+                if (schedule) queue.scheduled = true;
+            }
+            if (suppressed) {
+                trace.span("send.suppressed", enqueued);
+                trace.finish();
+            }
+            if (schedule) timer.schedule(() -> flush(queue), windowMillis, TimeUnit.MILLISECONDS);
+            return;
+        }
+    }
+
+    private void flush(ChannelQueue queue) {
+        List<MessageEmbed> batch;
+        List<Waiting> traces = List.of();
+        synchronized (queue) {
+            queue.scheduled = false;
+            if (queue.inFlight || queue.pending.isEmpty()) return;
+            batch = FixerBot.batches(queue.pending).get(0);
+            queue.pending.subList(0, batch.size()).clear();
+            long now = System.currentTimeMillis();
+            for (MessageEmbed embed : batch) queue.sent.add(new Sent(embed, now));
+            queue.taken += batch.size();
+            if (!queue.traces.isEmpty() && queue.traces.peek().last() <= queue.taken) {
+                traces = new ArrayList<>();
+                while (!queue.traces.isEmpty() && queue.traces.peek().last() <= queue.taken) traces.add(queue.traces.poll());
+            }
+            queue.inFlight = true;
+        }
+        long start = System.nanoTime();
+        List<Waiting> finishing = traces;
+        try {
+            queue.channel.sendMessageEmbeds(batch).queue(message -> {
+                BotMetrics.SEND.observeSince("ok", start);
+                BotMetrics.SENT_EMBEDS.add(null, batch.size());
+                finish(finishing, "send");
+                done(queue);
+            }, failure -> {
+                BotMetrics.SEND.observeSince("failed", start);
+                FixerBot.LOGGER.warn("Sending to channel {} failed", queue.channel.getIdLong(), failure);
+                finish(finishing, "send.failed");
+                done(queue);
+            });
+        } catch (RuntimeException e) {
+            FixerBot.LOGGER.warn("Sending to channel {} failed", queue.channel.getIdLong(), e);
+            finish(finishing, "send.failed");
+            done(queue);
+        }
+    }
+
+    private static void finish(List<Waiting> traces, String span) {
+        for (Waiting w : traces) {
+            w.trace().span(span, w.enqueuedNanos());
+            w.trace().finish();
+        }
+    }
+
+    private void done(ChannelQueue queue) {
+        synchronized (queue) {
+            queue.inFlight = false;
+            if (queue.pending.isEmpty()) {
+                scheduleEviction(queue);
+                return;
+            }
+            if (queue.scheduled) return;
+            queue.scheduled = true;
+        }
+        // Everything pending has waited for the send to finish already, so it goes out right away.
+        timer.execute(() -> flush(queue));
+    }
+
+    /**
+     * Checks the queue again once its last send leaves the duplicate window. Called holding the queue's lock.
+     */
+    private void scheduleEviction(ChannelQueue queue) {
+        if (queue.evictionScheduled) return;
+        queue.evictionScheduled = true;
+        long now = System.currentTimeMillis();
+        long last = queue.sent.isEmpty() ? now : queue.sent.get(queue.sent.size() - 1).at();
+        timer.schedule(() -> evict(queue), Math.max(0, last + duplicateMillis - now) + 1, TimeUnit.MILLISECONDS);
+    }
+
+    private void evict(ChannelQueue queue) {
+        synchronized (queue) {
+            queue.evictionScheduled = false;
+            // Busy again, and the send that's coming checks again once it's done.
+            if (!queue.pending.isEmpty() || queue.scheduled || queue.inFlight) return;
+            queue.prune(System.currentTimeMillis() - duplicateMillis);
+            if (!queue.sent.isEmpty()) {
+                scheduleEviction(queue);
+                return;
+            }
+            // Marked under the same lock send takes, so a send that found this queue before the removal retries with a new one.
+            queue.evicted = true;
+            channels.remove(queue.channel.getIdLong(), queue);
+        }
+    }
+
+    /**
+     * @return The amount of channels with a queue, the ones that were sent to within the duplicate window or have something to send.
+     */
+    public int channels() {
+        return channels.size();
+    }
+
+    /**
+     * @return The amount of embeds waiting to be sent, across every channel.
+     */
+    public int pending() {
+        int pending = 0;
+        for (ChannelQueue queue : channels.values()) {
+            synchronized (queue) {
+                pending += queue.pending.size();
+            }
+        }
+        return pending;
+    }
+
+    private static final class ChannelQueue {
+        final MessageChannel channel;
+        final List<MessageEmbed> pending = new ArrayList<>();
+        final List<Sent> sent = new ArrayList<>();
+        final ArrayDeque<Waiting> traces = new ArrayDeque<>();
+        long added;
+        long taken;
+        boolean scheduled;
+        boolean inFlight;
+        boolean evictionScheduled;
+        boolean evicted;
+
+        ChannelQueue(MessageChannel channel) {
+            this.channel = channel;
+        }
+
+        void prune(long before) {
+            Iterator<Sent> it = sent.iterator();
+            while (it.hasNext() && it.next().at() < before) it.remove();
+        }
+
+        boolean isDuplicate(MessageEmbed embed) {
+            // MessageEmbed has equals but not hashCode, and only the last few seconds are kept, so a scan it is.
+            for (MessageEmbed e : pending) if (e.equals(embed)) return true;
+            for (Sent s : sent) if (s.embed().equals(embed)) return true;
+            return false;
+        }
+    }
+
+    private record Sent(MessageEmbed embed, long at) {
+    }
+
+    /**
+     * A trace waiting for its embeds to be sent, last being the count of embeds ever added to the queue once its own were.
+     */
+    private record Waiting(Tracer.Trace trace, long enqueuedNanos, long last) {
+    }
+}
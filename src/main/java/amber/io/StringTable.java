@@ -0,0 +1,42 @@
+package amber.io;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Every distinct string of a file being written, so each is written once and referred to by its position.
+ */
+final class StringTable {
+    private final Map<String, Integer> ids = new HashMap<>();
+    private final List<String> strings = new ArrayList<>();
+
+    /**
+     * Gets the position of a string, adding it if it's new.
+     *
+     * @param s The string.
+     * @return The position of the string, -1 for null.
+     */
+    int id(String s) {
+        if (s == null) return -1;
+        return ids.computeIfAbsent(s, k -> {
+            strings.add(k);
+            return strings.size() - 1;
+        });
+    }
+
+    /**
+     * @return Every distinct string, in order of position.
+     */
+    List<String> strings() {
+        return strings;
+    }
+
+    /**
+     * @return The amount of distinct strings.
+     */
+    int size() {
+        return strings.size();
+    }
+}
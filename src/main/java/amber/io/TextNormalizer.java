@@ -0,0 +1,131 @@
+package amber.io;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Hand-written, single pass versions of the regex based normalization FixerBot and BotUtils have always done,
+ * so normalizing a name compiles no pattern and builds no intermediate strings.
+ * Only ASCII letters and digits are kept and letters are lowercased in ASCII, which is what the regexes gave in every locale but Turkish ones,
+ * where String.toLowerCase turned a kept 'I' into a dotless 'ı'.
+ */
+public final class TextNormalizer {
+    private TextNormalizer() {
+    }
+
+    /**
+     * Checks if a char is an ASCII letter or digit, [A-Za-z0-9].
+     *
+     * @param c The char.
+     * @return Whether it is.
+     */
+    public static boolean isAlphanumeric(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9');
+    }
+
+    /**
+     * Removes every char but ASCII letters and digits and lowercases the rest, the same as replaceAll("[^A-Za-z0-9]+", "").toLowerCase().
+     *
+     * @param s The input string.
+     * @return The cleaned string, the input itself if it's already clean.
+     */
+    public static String clean(String s) {
+        int n = s.length();
+        int i = 0;
+        while (i < n) {
+            char c = s.charAt(i);
+            if ((c >= 'a' && c <= 'z') || (c >= '0' && c <= '9')) i++;
+            else break;
+        }
+        if (i == n) return s;
+
+        char[] out = new char[n];
+        s.getChars(0, i, out, 0);
+        int len = i;
+        for (; i < n; i++) {
+            char c = s.charAt(i);
+            if (c >= 'A' && c <= 'Z') out[len++] = (char) (c + ('a' - 'A'));
+            else if (isAlphanumeric(c)) out[len++] = c;
+        }
+        return new String(out, 0, len);
+    }
+
+    /**
+     * Gets every run of ASCII letters and digits in a string, cleaned, the same as cleaning each part of split("[^A-Za-z0-9]+") and leaving out the empty ones.
+     *
+     * @param s The input string.
+     * @return The cleaned tokens, in order.
+     */
+    public static List<String> tokens(String s) {
+        List<String> tokens = new ArrayList<>(4);
+        int n = s.length();
+        int i = 0;
+        while (i < n) {
+            while (i < n && !isAlphanumeric(s.charAt(i))) i++;
+            int start = i;
+            while (i < n && isAlphanumeric(s.charAt(i))) i++;
+            if (i > start) tokens.add(clean(s.substring(start, i)));
+        }
+        return tokens;
+    }
+
+    /**
+     * Checks if a run of ASCII letters and digits in a string equals a token, ignoring case.
+     * The same as checking every part of split("[^A-Za-z0-9]+") with equalsIgnoreCase, without splitting.
+     *
+     * @param s     The string to look in.
+     * @param token The token, made of ASCII letters and digits only.
+     * @return Whether the string has the token.
+     */
+    public static boolean hasToken(String s, String token) {
+        int n = s.length();
+        int i = 0;
+        while (i < n) {
+            while (i < n && !isAlphanumeric(s.charAt(i))) i++;
+            int start = i;
+            while (i < n && isAlphanumeric(s.charAt(i))) i++;
+            if (i - start == token.length() && s.regionMatches(true, start, token, 0, token.length())) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Checks if a string in lowercase contains a value, the same as s.toLowerCase().contains(wantLower), without building the lowercase copy.
+     * String.toLowerCase lowercases char by char except for a capital sigma, a dotted capital I, surrogate pairs and Turkish, Azerbaijani
+     * and Lithuanian locales, so those fall back to the copy.
+     *
+     * @param s         The string to look in.
+     * @param wantLower The value wanted, in lowercase.
+     * @return Whether the lowercase string contains the value.
+     */
+    public static boolean containsLowercase(String s, String wantLower) {
+        String language = Locale.getDefault().getLanguage();
+        if (language.equals("tr") || language.equals("az") || language.equals("lt")) return s.toLowerCase().contains(wantLower);
+        int n = s.length();
+        for (int i = 0; i < n; i++) {
+            char c = s.charAt(i);
+            if (c == '\u03A3' || c == '\u0130' || Character.isSurrogate(c)) return s.toLowerCase().contains(wantLower);
+        }
+
+        int m = wantLower.length();
+        for (int i = 0; i + m <= n; i++) {
+            int j = 0;
+            while (j < m && Character.toLowerCase(s.charAt(i + j)) == wantLower.charAt(j)) j++;
+            if (j == m) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Counts the ASCII letters and digits in a string, the length of its cleaned form.
+     *
+     * @param s The input string.
+     * @return The amount of ASCII letters and digits.
+     */
+    public static int alphanumericLength(String s) {
+        int count = 0;
+        for (int i = 0; i < s.length(); i++) if (isAlphanumeric(s.charAt(i))) count++;
+        return count;
+    }
+}
@@ -0,0 +1,218 @@
+package amber.io;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Samples messages with {{...}} and records how long every stage of answering them took: extracting the names, waiting for a worker,
+ * each resolution step, building the embed, and the send from being queued to being acknowledged by Discord.
+ * The last CAPACITY traces are kept in a ring buffer, and {{dumptraces}} writes them to PATH.
+ * <p>
+ * A trace is the current trace of whichever thread is working on its message, see run and call, and each stage adds its span to the current trace.
+ * Sampling is off unless fixerbot.trace.sample is set, and while it's off every stage only checks a constant, so tracing costs nothing.
+ * <p>
+ * Configured with system properties: fixerbot.trace.sample (the share of messages traced, from 0 to 1, default 0),
+ * fixerbot.trace.buffer (default 256 traces) and fixerbot.trace.file (default traces.txt).
+ */
+public final class Tracer {
+    /**
+     * The share of messages traced.
+     */
+    public static final double SAMPLE = Double.parseDouble(System.getProperty("fixerbot.trace.sample", "0"));
+    /**
+     * Whether any message is traced.
+     */
+    public static final boolean ENABLED = SAMPLE > 0;
+    /**
+     * The amount of finished traces kept.
+     */
+    public static final int CAPACITY = Math.max(1, Integer.getInteger("fixerbot.trace.buffer", 256));
+    /**
+     * The file traces are dumped to.
+     */
+    public static final Path PATH = Path.of(System.getProperty("fixerbot.trace.file", "traces.txt"));
+
+    private static final ThreadLocal<Trace> CURRENT = new ThreadLocal<>();
+    private static final AtomicLong IDS = new AtomicLong();
+    private static final Trace[] RING = new Trace[CAPACITY];
+    private static long recorded;
+
+    private Tracer() {
+    }
+
+    /**
+     * Decides whether to trace a message. Checked before building anything for start, so while sampling is off it only reads ENABLED.
+     *
+     * @return Whether the message is sampled.
+     */
+    public static boolean sampled() {
+        return ENABLED && ThreadLocalRandom.current().nextDouble() < SAMPLE;
+    }
+
+    /**
+     * Starts tracing a message that was sampled.
+     *
+     * @param label      What the trace is of, shown when dumped.
+     * @param startNanos The System.nanoTime() the message was received at.
+     * @return The trace.
+     */
+    public static Trace start(String label, long startNanos) {
+        return new Trace(IDS.incrementAndGet(), label, startNanos);
+    }
+
+    /**
+     * @return The trace of the message the current thread is working on, null if it isn't traced.
+     */
+    public static Trace current() {
+        return ENABLED ? CURRENT.get() : null;
+    }
+
+    /**
+     * Runs a task with a trace as the current one.
+     *
+     * @param trace The trace, null to just run the task.
+     * @param task  The task.
+     */
+    public static void run(Trace trace, Runnable task) {
+        call(trace, () -> {
+            task.run();
+            return null;
+        });
+    }
+
+    /**
+     * Calls a task with a trace as the current one.
+     *
+     * @param trace The trace, null to just call the task.
+     * @param task  The task.
+     * @param <T>   The type of the result.
+     * @return The result of the task.
+     */
+    public static <T> T call(Trace trace, Supplier<T> task) {
+        if (trace == null) return task.get();
+        Trace previous = CURRENT.get();
+        CURRENT.set(trace);
+        try {
+            return task.get();
+        } finally {
+            CURRENT.set(previous);
+        }
+    }
+
+    private static void record(Trace trace) {
+        synchronized (RING) {
+            RING[(int) (recorded++ % CAPACITY)] = trace;
+        }
+    }
+
+    /**
+     * @return The finished traces in the ring buffer, oldest first.
+     */
+    public static List<Trace> recent() {
+        synchronized (RING) {
+            List<Trace> traces = new ArrayList<>(CAPACITY);
+            for (long i = Math.max(0, recorded - CAPACITY); i < recorded; i++) traces.add(RING[(int) (i % CAPACITY)]);
+            return traces;
+        }
+    }
+
+    /**
+     * Writes the finished traces in the ring buffer to PATH, replacing what was there.
+     *
+     * @return The amount of traces written.
+     * @throws IOException If the file can't be written.
+     */
+    public static int dump() throws IOException {
+        List<Trace> traces = recent();
+        StringBuilder out = new StringBuilder();
+        for (Trace trace : traces) out.append(trace.format()).append('\n');
+        Path tmp = PATH.resolveSibling(PATH.getFileName() + ".tmp");
+        Files.writeString(tmp, out, StandardCharsets.UTF_8);
+        Files.move(tmp, PATH, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return traces.size();
+    }
+
+    /**
+     * The stages of answering one message.
+     */
+    public static final class Trace {
+        private final long id;
+        private final String label;
+        private final Instant startedAt = Instant.now();
+        private final long startNanos;
+        private final List<Span> spans = new ArrayList<>();
+        private long endNanos;
+
+        private Trace(long id, String label, long startNanos) {
+            this.id = id;
+            this.label = label;
+            this.startNanos = startNanos;
+        }
+
+        /**
+         * Adds a stage that ends now.
+         *
+         * @param name       The stage.
+         * @param startNanos The System.nanoTime() the stage started at.
+         */
+        public void span(String name, long startNanos) {
+            span(name, null, startNanos);
+        }
+
+        /**
+         * Adds a stage that ends now.
+         *
+         * @param name       The stage.
+         * @param detail     What the stage worked on, like the name being resolved, null for nothing.
+         * @param startNanos The System.nanoTime() the stage started at.
+         */
+        public synchronized void span(String name, String detail, long startNanos) {
+            spans.add(new Span(name, detail, startNanos - this.startNanos, System.nanoTime() - startNanos));
+        }
+
+        /**
+         * Ends the trace and puts it in the ring buffer. Called once, when the answer to the message was sent or there was nothing to send.
+         */
+        public void finish() {
+            synchronized (this) {
+                endNanos = System.nanoTime();
+            }
+            record(this);
+        }
+
+        /**
+         * @return The trace as text: a line with the label and the total time, then a line per stage with its offset and duration.
+         */
+        public synchronized String format() {
+            StringBuilder out = new StringBuilder();
+            out.append('#').append(id).append(' ').append(startedAt).append(' ').append(label)
+                    .append(String.format(" %.3f ms%n", (endNanos - startNanos) / 1e6));
+            for (Span s : spans) {
+                out.append(String.format("  +%10.3f ms %10.3f ms  %s", s.offsetNanos() / 1e6, s.durationNanos() / 1e6, s.name()));
+                if (s.detail() != null) out.append(' ').append(s.detail());
+                out.append('\n');
+            }
+            return out.toString();
+        }
+    }
+
+    /**
+     * A stage of a trace.
+     *
+     * @param name          The stage.
+     * @param detail        What the stage worked on, null for nothing.
+     * @param offsetNanos   When the stage started, from the start of the trace.
+     * @param durationNanos How long the stage took.
+     */
+    public record Span(String name, String detail, long offsetNanos, long durationNanos) {
+    }
+}
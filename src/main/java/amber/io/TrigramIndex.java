@@ -0,0 +1,89 @@
+package amber.io;
+
+import java.util.*;
+
+/**
+ * An inverted index from every three char sequence of the lowercase names and descriptions to the ordinals of the packages that have it, built once per cache refresh.
+ * A package can only contain a value if it has every trigram of the value, so only the packages on the shortest matching posting list need the real contains check.
+ * Posting lists are in ordinal order, so the first package that passes is the same one a scan over the listing finds.
+ */
+public final class TrigramIndex {
+    private static final int[] NONE = new int[0];
+
+    private final List<ModPackage> packages;
+    private final Map<Long, int[]> postings;
+
+    /**
+     * Builds the index.
+     *
+     * @param packages The packages, in listing order, with ordinals matching their position.
+     */
+    public TrigramIndex(List<ModPackage> packages) {
+        this.packages = packages;
+        Map<Long, Postings> building = new HashMap<>();
+        for (ModPackage p : packages) {
+            add(building, p.lowerName(), p.ordinal());
+            add(building, p.lowerDescription(), p.ordinal());
+        }
+        this.postings = new HashMap<>(building.size() * 2);
+        for (Map.Entry<Long, Postings> e : building.entrySet()) postings.put(e.getKey(), e.getValue().toArray());
+    }
+
+    private static void add(Map<Long, Postings> building, String s, int ordinal) {
+        if (s == null) return;
+        for (int i = 0; i + 3 <= s.length(); i++) building.computeIfAbsent(trigram(s, i), k -> new Postings()).add(ordinal);
+    }
+
+    private static long trigram(String s, int i) {
+        return ((long) s.charAt(i) << 32) | ((long) s.charAt(i + 1) << 16) | s.charAt(i + 2);
+    }
+
+    /**
+     * Finds the first package whose lowercase name or description contains a value, see ModPackage.nameOrDescriptionContains.
+     *
+     * @param wantLower The value wanted, in lowercase.
+     * @param limit     Only packages with an ordinal below this are checked.
+     * @return The package, null if none before limit contains the value.
+     */
+    public ModPackage firstContaining(String wantLower, int limit) {
+        limit = Math.min(limit, packages.size());
+        if (wantLower.length() < 3) {
+            for (int i = 0; i < limit; i++) {
+                ModPackage m = packages.get(i);
+                if (m.nameOrDescriptionContains(wantLower)) return m;
+            }
+            return null;
+        }
+
+        int[] rarest = null;
+        for (int i = 0; i + 3 <= wantLower.length(); i++) {
+            int[] list = postings.getOrDefault(trigram(wantLower, i), NONE);
+            if (rarest == null || list.length < rarest.length) rarest = list;
+            if (rarest.length == 0) return null;
+        }
+        for (int ordinal : rarest) {
+            if (ordinal >= limit) return null;
+            ModPackage m = packages.get(ordinal);
+            if (m.nameOrDescriptionContains(wantLower)) return m;
+        }
+        return null;
+    }
+
+    /**
+     * A growing posting list. Packages are added in ordinal order, so a package with the trigram more than once is only added the first time.
+     */
+    private static final class Postings {
+        int[] ordinals = new int[4];
+        int size;
+
+        void add(int ordinal) {
+            if (size > 0 && ordinals[size - 1] == ordinal) return;
+            if (size == ordinals.length) ordinals = Arrays.copyOf(ordinals, size * 2);
+            ordinals[size++] = ordinal;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(ordinals, size);
+        }
+    }
+}
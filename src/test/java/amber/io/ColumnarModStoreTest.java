@@ -0,0 +1,69 @@
+package amber.io;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks that every refresh maps a generation of its own, so live rows never sit on a replaced file, and that old generations go once unreachable.
+ */
+class ColumnarModStoreTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void namesGenerationsBeforeTheExtension() {
+        assertEquals(dir.resolve("mods.3.columns"), ColumnarModStore.generation(dir.resolve("mods.columns"), 3));
+        assertEquals(dir.resolve("columns.3"), ColumnarModStore.generation(dir.resolve("columns"), 3));
+    }
+
+    @Test
+    void keepsAGenerationWhileItsRowsAreReachable() throws IOException, InterruptedException {
+        Path path = dir.resolve("mods.columns");
+        Files.writeString(dir.resolve("mods.columns.bak"), "not a generation");
+
+        List<ModFetcher.Chunk> first = ColumnarModStore.mapChunks(path, chunks("first"));
+        List<ModFetcher.Chunk> second = ColumnarModStore.mapChunks(path, chunks("second"));
+        assertArrayEquals(new long[]{1, 2}, ColumnarModStore.generations(path));
+        assertEquals("first 0", first.get(0).packages().get(0).details().description());
+        assertEquals("second 1", second.get(0).packages().get(1).details().description());
+
+        first = null;
+        long deadline = System.nanoTime() + 5_000_000_000L;
+        while (ColumnarModStore.generations(path).length > 1) {
+            assertTrue(System.nanoTime() < deadline, "Timed out waiting for the first generation to be deleted");
+            System.gc();
+            Thread.sleep(10);
+            ColumnarModStore.deleteSuperseded(path);
+        }
+        assertArrayEquals(new long[]{2}, ColumnarModStore.generations(path));
+        assertEquals("second 0", second.get(0).packages().get(0).details().description());
+        assertTrue(Files.exists(dir.resolve("mods.columns.bak")));
+    }
+
+    @Test
+    void continuesAfterTheNewestGenerationOnDisk() throws IOException {
+        Path path = dir.resolve("mods.columns");
+        Files.writeString(ColumnarModStore.generation(path, 7), "left by an earlier run");
+
+        List<ModFetcher.Chunk> mapped = ColumnarModStore.mapChunks(path, chunks("restored"));
+        assertArrayEquals(new long[]{8}, ColumnarModStore.generations(path));
+        assertEquals("restored 1", mapped.get(0).packages().get(1).details().description());
+    }
+
+    private static List<ModFetcher.Chunk> chunks(String description) {
+        List<ModPackage> packages = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            ModDetails details = ModDetails.of("", description + " " + i, "", "false", "Owner", null, "1.0.0", "Mod" + i, "", null);
+            packages.add(ModPackage.of(i, "Mod" + i, "Owner-Mod" + i, description, null, "Mod" + i, details));
+        }
+        return List.of(new ModFetcher.Chunk("https://example.invalid/chunk.json.gz", description, List.copyOf(packages)));
+    }
+}
@@ -0,0 +1,127 @@
+package amber.io;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * Checks FuzzyIndex.closest against a scan over every key, the way BotUtils.getClosestPackage has always compared them.
+ */
+class FuzzyIndexTest {
+    private static final String[] WORDS = {"more", "company", "lethal", "things", "suits", "emotes", "bigger", "lobby", "ship", "loot",
+            "mod", "api", "lib", "core", "fix", "hud", "radar", "scrap", "moon", "terminal"};
+
+    /**
+     * The lowest distance, then the shortest key, then the key that comes first in listing order, with a key shared by several packages
+     * belonging to the first of them.
+     */
+    static FuzzyIndex.Match scan(List<ModPackage> packages, String want, int radius) {
+        Set<String> seen = new HashSet<>();
+        FuzzyIndex.Match best = null;
+        for (ModPackage p : packages) {
+            for (String key : p.lowerKeys()) {
+                if (!seen.add(key)) continue;
+                int d = LevenshteinTest.reference(want, key, Integer.MAX_VALUE - 1);
+                if (d > radius) continue;
+                if (best == null || d < best.distance() || (d == best.distance() && key.length() < best.key().length())) {
+                    best = new FuzzyIndex.Match(d, key, p);
+                }
+            }
+        }
+        return best;
+    }
+
+    @Test
+    void matchesAScanOverEveryKey() {
+        Random random = new Random(3);
+        List<ModPackage> packages = listing(random, 1500);
+        FuzzyIndex index = new FuzzyIndex(packages);
+        for (int round = 0; round < 3000; round++) {
+            String want = query(random, packages);
+            int radius = switch (random.nextInt(4)) {
+                case 0 -> 0;
+                case 1 -> 2;
+                case 2 -> 5;
+                default -> Integer.MAX_VALUE / 2;
+            };
+            check(packages, index, want, radius);
+        }
+    }
+
+    @Test
+    void breaksTiesByLengthThenListingOrder() {
+        List<ModPackage> packages = List.of(
+                pkg(0, "abcx", "A-abcx", null),
+                pkg(1, "abcy", "B-abcy", null),
+                pkg(2, "abz", "C-abz", null),
+                pkg(3, "abcx", "D-abcx", null));
+        FuzzyIndex index = new FuzzyIndex(packages);
+
+        // abcx, abcy and abz are all one edit from abc, and abz is the shortest.
+        FuzzyIndex.Match match = index.closest("abc", 3);
+        assertEquals("abz", match.key());
+        assertEquals(1, match.distance());
+
+        // abcx and abcy are both one edit from abcq and just as long, so the one listed first wins.
+        match = index.closest("abcq", 3);
+        assertEquals("abcx", match.key());
+        assertSame(packages.get(0), match.pkg());
+
+        // A key shared by two packages belongs to the first.
+        assertSame(packages.get(0), index.closest("abcx", 0).pkg());
+        for (String want : List.of("abc", "abcq", "abcx", "ab", "xyz", "d-abcx")) {
+            for (int radius = 0; radius < 6; radius++) check(packages, index, want, radius);
+        }
+    }
+
+    @Test
+    void findsNothingOutsideTheRadius() {
+        FuzzyIndex index = new FuzzyIndex(List.of(pkg(0, "lethalthings", "Evaisa-LethalThings", null)));
+        assertNull(index.closest("moreemotes", 2));
+        assertNull(index.closest("lethalthings", -1));
+        assertNull(new FuzzyIndex(List.of()).closest("anything", 10));
+    }
+
+    private static void check(List<ModPackage> packages, FuzzyIndex index, String want, int radius) {
+        FuzzyIndex.Match expected = scan(packages, want, radius);
+        FuzzyIndex.Match actual = index.closest(want, radius);
+        String context = "'" + want + "' within " + radius;
+        if (expected == null) {
+            assertNull(actual, context);
+            return;
+        }
+        assertEquals(expected.distance(), actual.distance(), context);
+        assertEquals(expected.key(), actual.key(), context);
+        assertSame(expected.pkg(), actual.pkg(), context);
+    }
+
+    private static List<ModPackage> listing(Random random, int count) {
+        List<ModPackage> packages = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String name = word(random) + (random.nextBoolean() ? word(random) : "") + (random.nextInt(4) == 0 ? random.nextInt(10) : "");
+            String owner = word(random);
+            // Every so often a package reuses a name, so some keys belong to more than one package.
+            if (i > 0 && random.nextInt(10) == 0) name = packages.get(random.nextInt(i)).name();
+            packages.add(pkg(i, name, owner + "-" + name, random.nextInt(3) == 0 ? name + "_v" + random.nextInt(3) : name));
+        }
+        return packages;
+    }
+
+    private static String query(Random random, List<ModPackage> packages) {
+        if (random.nextInt(5) == 0) return word(random) + word(random);
+        List<String> keys = packages.get(random.nextInt(packages.size())).lowerKeys();
+        return LevenshteinTest.mutate(random, keys.get(random.nextInt(keys.size())), random.nextInt(4)).toLowerCase();
+    }
+
+    private static String word(Random random) {
+        return WORDS[random.nextInt(WORDS.length)];
+    }
+
+    static ModPackage pkg(int ordinal, String name, String fullName, String firstVersionName) {
+        return ModPackage.of(ordinal, name, fullName, null, null, firstVersionName, null);
+    }
+}
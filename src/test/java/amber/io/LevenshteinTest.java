@@ -0,0 +1,125 @@
+package amber.io;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Checks every Levenshtein variant against the textbook DP BotUtils.calculateDistance used before it, on random pairs of strings.
+ */
+class LevenshteinTest {
+    private static final int[] MAXES = {0, 1, 2, 3, 5, 10, 40, 100, Integer.MAX_VALUE};
+
+    /**
+     * The DP BotUtils.calculateDistance had, with its early exit once a whole row is over max.
+     */
+    static int reference(String first, String second, int max) {
+        if (first.length() < second.length()) return reference(second, first, max);
+        if (second.isEmpty()) return Math.min(first.length(), max + 1);
+        int[] prev = new int[second.length() + 1];
+        int[] curr = new int[second.length() + 1];
+        for (int j = 0; j <= second.length(); j++) prev[j] = j;
+        for (int i = 1; i <= first.length(); i++) {
+            curr[0] = i;
+            int rowMin = i;
+            for (int j = 1; j <= second.length(); j++) {
+                int cost = first.charAt(i - 1) == second.charAt(j - 1) ? 0 : 1;
+                curr[j] = Math.min(Math.min(curr[j - 1] + 1, prev[j] + 1), prev[j - 1] + cost);
+                rowMin = Math.min(rowMin, curr[j]);
+            }
+            if (rowMin > max) return max + 1;
+            int[] tmp = prev;
+            prev = curr;
+            curr = tmp;
+        }
+        return prev[second.length()];
+    }
+
+    @Test
+    void matchesTheDpOnRandomPairs() {
+        Random random = new Random(42);
+        for (int round = 0; round < 20_000; round++) {
+            String a = randomString(random, random.nextInt(round % 4 == 0 ? 200 : 70));
+            String b = random.nextBoolean() ? mutate(random, a, random.nextInt(8)) : randomString(random, random.nextInt(200));
+            check(a, b, MAXES[random.nextInt(MAXES.length)]);
+        }
+    }
+
+    @Test
+    void matchesTheDpAroundTheWordBoundary() {
+        Random random = new Random(7);
+        for (int length = 60; length <= 132; length++) {
+            for (int round = 0; round < 20; round++) {
+                String a = randomString(random, length);
+                String b = mutate(random, a, random.nextInt(6));
+                for (int max : MAXES) check(a, b, max);
+            }
+        }
+    }
+
+    @Test
+    void handlesEmptyAndIdenticalStrings() {
+        for (int max : MAXES) {
+            check("", "", max);
+            check("", "abc", max);
+            check("abc", "", max);
+            check("same", "same", max);
+            String longer = "x".repeat(150);
+            check(longer, longer, max);
+        }
+    }
+
+    private static void check(String a, String b, int max) {
+        int expected = reference(a, b, max);
+        // The old DP's max + 1 overflows for an empty string at Integer.MAX_VALUE, which distance keeps, so bounded is checked against the exact distance.
+        int exact = reference(a, b, Integer.MAX_VALUE - 1);
+        int bounded = exact > max ? max + 1 : exact;
+        String context = "'" + a + "' vs '" + b + "', max " + max;
+
+        assertEquals(expected, Levenshtein.distance(a, b, max), "distance " + context);
+        assertEquals(expected, BotUtils.calculateDistance(a, b, max), "calculateDistance " + context);
+        assertEquals(bounded, Levenshtein.bounded(a, b, max), "bounded " + context);
+        assertEquals(bounded, Levenshtein.banded(a, b, max), "banded " + context);
+
+        String text = a.length() >= b.length() ? a : b;
+        String pattern = a.length() >= b.length() ? b : a;
+        if (pattern.isEmpty()) return;
+        if (pattern.length() <= 64) assertEquals(expected, Levenshtein.myers(text, pattern, max), "myers " + context);
+        assertEquals(expected, Levenshtein.myersBlocked(text, pattern, max), "myersBlocked " + context);
+    }
+
+    /**
+     * Mostly a small alphabet, so pairs share a lot, with the odd char outside the lookup tables.
+     */
+    static String randomString(Random random, int length) {
+        StringBuilder s = new StringBuilder(length);
+        for (int i = 0; i < length; i++) s.append(randomChar(random));
+        return s.toString();
+    }
+
+    private static char randomChar(Random random) {
+        int pick = random.nextInt(20);
+        if (pick == 0) return (char) (0x100 + random.nextInt(0x2000));
+        if (pick == 1) return (char) ('A' + random.nextInt(26));
+        return "abcdef_- ".charAt(random.nextInt(9));
+    }
+
+    static String mutate(Random random, String s, int edits) {
+        StringBuilder b = new StringBuilder(s);
+        for (int e = 0; e < edits; e++) {
+            int at = b.isEmpty() ? 0 : random.nextInt(b.length());
+            switch (random.nextInt(3)) {
+                case 0 -> b.insert(at, randomChar(random));
+                case 1 -> {
+                    if (!b.isEmpty()) b.deleteCharAt(at);
+                }
+                default -> {
+                    if (!b.isEmpty()) b.setCharAt(at, randomChar(random));
+                }
+            }
+        }
+        return b.toString();
+    }
+}
@@ -0,0 +1,148 @@
+package amber.io;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks the values ListingParser projects out of a small listing, and what it does with fields it doesn't know and packages without a name.
+ */
+class ListingParserTest {
+    private static final String LISTING = """
+            [
+              {
+                "name": "Lethal_Things",
+                "full_name": "Evaisa-Lethal_Things",
+                "owner": "Evaisa",
+                "package_url": "https://thunderstore.io/c/x/p/Evaisa/Lethal_Things/",
+                "date_updated": "2024-10-02T10:00:00.000000Z",
+                "description": "More things",
+                "is_deprecated": false,
+                "has_nsfw_content": true,
+                "categories": ["Items", {"nested": [1, 2]}],
+                "rating_score": 12,
+                "versions": [
+                  {
+                    "name": "Lethal_Things",
+                    "version_number": "1.2.0",
+                    "description": "Older",
+                    "date_created": "2024-09-01T10:00:00.000000Z",
+                    "is_active": true,
+                    "dependencies": ["BepInEx-BepInExPack-5.4.2100", "Evaisa-HookGenPatcher-0.0.5"],
+                    "download_url": "https://example.invalid/1.2.0.zip"
+                  },
+                  {
+                    "name": "Lethal_Things",
+                    "version_number": "1.3.0",
+                    "description": "Latest",
+                    "icon": "https://example.invalid/icon.png",
+                    "date_created": "2024-10-02T10:00:00.000000Z",
+                    "is_active": true,
+                    "file_size": 123456,
+                    "dependencies": ["BepInEx-BepInExPack-5.4.2100", "Evaisa-HookGenPatcher-0.0.5", "Owner-Lib-1.0.0"],
+                    "download_url": "https://example.invalid/1.3.0.zip",
+                    "website_url": "https://example.invalid"
+                  },
+                  {
+                    "name": "Lethal_Things",
+                    "version_number": "2.0.0",
+                    "date_created": "not a date",
+                    "is_active": false
+                  }
+                ]
+              },
+              "not a package",
+              {
+                "full_name": "Someone-Nameless",
+                "namespace": "Someone",
+                "is_deprecated": true,
+                "has_nsfw_content": false,
+                "versions": [
+                  {"name": "Nameless", "version_number": "0.1.0", "is_active": false, "date_created": "2024-01-01T00:00:00Z"},
+                  {"name": "Nameless", "version_number": "0.2.0", "is_active": false, "date_created": "2024-02-01T00:00:00Z"}
+                ]
+              },
+              {"name": "NoVersions", "description": null, "versions": "none"}
+            ]
+            """;
+
+    @Test
+    void projectsThePackageValues() throws IOException {
+        List<ModPackage> packages = parse();
+        assertEquals(3, packages.size());
+
+        ModPackage p = packages.get(0);
+        assertEquals(0, p.ordinal());
+        assertEquals("Lethal_Things", p.name());
+        assertEquals("Evaisa-Lethal_Things", p.fullName());
+        assertEquals("More things", p.description());
+        assertEquals("2024-10-02T10:00:00.000000Z", p.dateUpdated());
+        assertEquals(List.of("Lethal_Things", "Evaisa-Lethal_Things", "Lethal_Things"), p.keys());
+        assertEquals("lethal_things", p.lowerName());
+        assertEquals(Set.of("lethalthings", "evaisalethalthings", "lethal", "things"), p.normalizedKeys());
+
+        // The latest active version is chosen; the inactive one with a date that doesn't parse is never compared.
+        ModDetails d = p.details();
+        assertEquals("1.3.0", d.version());
+        assertEquals("Latest", d.description());
+        assertEquals("Lethal_Things", d.name());
+        assertEquals("https://example.invalid/1.3.0.zip", d.downloadUrl());
+        assertEquals("https://example.invalid/icon.png", d.icon());
+        assertEquals("https://example.invalid", d.website());
+        assertEquals("Evaisa-HookGenPatcher-0.0.5,Owner-Lib-1.0.0", d.dependencies());
+        assertEquals("false", d.deprecated());
+        assertEquals("Evaisa", d.author());
+        assertEquals("https://thunderstore.io/c/x/p/Evaisa/Lethal_Things/", d.page());
+    }
+
+    @Test
+    void skipsUnknownFieldsAndNonObjects() throws IOException {
+        List<ModPackage> packages = parse();
+        // has_nsfw_content, categories, rating_score and file_size aren't projected, and "not a package" takes no ordinal.
+        assertEquals(List.of(0, 1, 2), packages.stream().map(ModPackage::ordinal).toList());
+        assertEquals("Someone-Nameless", packages.get(1).fullName());
+        assertEquals("NoVersions", packages.get(2).name());
+        assertNull(packages.get(2).description());
+        assertNull(packages.get(2).details());
+        assertEquals(List.of("NoVersions", ""), packages.get(2).keys());
+    }
+
+    @Test
+    void keepsAPackageWithoutAName() throws IOException {
+        ModPackage p = parse().get(1);
+        assertNull(p.name());
+        assertNull(p.lowerName());
+        assertNull(p.cleanName());
+        assertEquals(List.of("", "Someone-Nameless", "Nameless"), p.keys());
+        assertEquals(List.of("someone-nameless", "nameless"), p.lowerKeys());
+        assertEquals(Set.of("someonenameless", "nameless"), p.normalizedKeys());
+
+        // Without an active version, the last listed one is shown.
+        ModDetails d = p.details();
+        assertEquals("0.2.0", d.version());
+        assertEquals("true", d.deprecated());
+        assertEquals("Someone", d.author());
+        assertEquals("", d.downloadUrl());
+        assertEquals("", d.dependencies());
+    }
+
+    @Test
+    void rejectsAnInvalidListing() {
+        assertThrows(IOException.class, () -> ListingParser.parse(stream("{\"name\": \"Lethal_Things\"}")));
+        assertThrows(IOException.class, () -> ListingParser.parse(stream("[{\"versions\": [{\"date_created\": \"soon\"}, {\"date_created\": \"later\"}]}]")));
+    }
+
+    private static List<ModPackage> parse() throws IOException {
+        return ListingParser.parse(stream(LISTING));
+    }
+
+    private static ByteArrayInputStream stream(String json) {
+        return new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+    }
+}
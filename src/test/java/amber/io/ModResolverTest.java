@@ -0,0 +1,79 @@
+package amber.io;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks that ModResolver.resolve ends at each Kind for the names the old exists, findByTitle and getClosestPackage chain sent there.
+ */
+class ModResolverTest {
+    private static final ModIndex INDEX = new ModIndex(List.of(
+            pkg(0, "LethalThings", "Evaisa-LethalThings", "More things for the ship", true),
+            pkg(1, "MoreCompany", "notnotnotswipez-MoreCompany", "Lets more people join the lobby", true),
+            pkg(2, "Shipwright", "Someone-Shipwright", null, false),
+            pkg(3, "Better_Emotes", "Owner-Better_Emotes", "An emote wheel", true),
+            pkg(4, "Company_Tools", "Owner-Company_Tools", null, true)));
+
+    @Test
+    void resolvesTheLowercaseNameExactly() {
+        check("MoreCompany", ModResolver.Kind.EXACT, 1, 0);
+    }
+
+    @Test
+    void resolvesTheCleanedName() {
+        check("Better Emotes", ModResolver.Kind.NORMALIZED, 3, 0);
+    }
+
+    @Test
+    void resolvesANameToken() {
+        check("emotes", ModResolver.Kind.TOKEN, 3, 0);
+    }
+
+    @Test
+    void prefersAnEarlierPackageContainingTheName() {
+        // company is a token of Company_Tools, but MoreCompany is listed first and contains it.
+        check("company", ModResolver.Kind.SUBSTRING, 1, 0);
+    }
+
+    @Test
+    void showsACloseMatch() {
+        ModResolver.Resolution r = check("lethalthigs", ModResolver.Kind.FUZZY_ACCEPT, 0, 1);
+        assertEquals("LethalThings", r.title());
+    }
+
+    @Test
+    void suggestsAFartherMatch() {
+        check("lethalthingsxyz", ModResolver.Kind.FUZZY_SUGGEST, 0, 3);
+    }
+
+    @Test
+    void suggestsACloseMatchWithoutDetails() {
+        // This used to recurse between createEmbedFromModName and createNotFoundEmbed until the stack ran out.
+        check("shipwrigt", ModResolver.Kind.FUZZY_SUGGEST, 2, 1);
+    }
+
+    @Test
+    void findsNothingForUnrelatedNames() {
+        ModResolver.Resolution r = ModResolver.resolve(INDEX, "zzzzzzzz");
+        assertEquals(ModResolver.Kind.NONE, r.kind());
+        assertNull(r.pkg());
+        assertFalse(r.found());
+    }
+
+    private static ModResolver.Resolution check(String query, ModResolver.Kind kind, int ordinal, int distance) {
+        ModResolver.Resolution r = ModResolver.resolve(INDEX, query);
+        assertEquals(kind, r.kind(), query);
+        assertSame(INDEX.packages().get(ordinal), r.pkg(), query);
+        assertEquals(distance, r.distance(), query);
+        assertEquals(query, r.query());
+        return r;
+    }
+
+    private static ModPackage pkg(int ordinal, String name, String fullName, String description, boolean hasDetails) {
+        ModDetails details = hasDetails ? ModDetails.of("", description, "", "false", "", "", "1.0.0", name, "", "") : null;
+        return ModPackage.of(ordinal, name, fullName, description, null, hasDetails ? name : null, details);
+    }
+}
@@ -0,0 +1,105 @@
+package amber.io;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks that a ModSnapshot reads back exactly what was written, and that damaged or foreign files are turned down.
+ */
+class ModSnapshotTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void readsBackWhatWasWritten() throws IOException {
+        Path path = dir.resolve("mods.snapshot");
+        ModFetcher.Validators validators = new ModFetcher.Validators("\"etag\"", null);
+        List<ModFetcher.Chunk> chunks = chunks(new Random(9));
+        ModSnapshot.write(path, validators, chunks);
+
+        ModSnapshot.Snapshot read = ModSnapshot.read(path);
+        assertNotNull(read);
+        assertEquals(validators, read.validators());
+        assertEquals(chunks, read.chunks());
+        assertFalse(Files.exists(dir.resolve("mods.snapshot.tmp")));
+    }
+
+    @Test
+    void readsNothingWithoutAFile() throws IOException {
+        assertNull(ModSnapshot.read(dir.resolve("missing.snapshot")));
+    }
+
+    @Test
+    void rejectsABadChecksum() throws IOException {
+        Path path = written();
+        byte[] bytes = Files.readAllBytes(path);
+        bytes[bytes.length / 2] ^= 1;
+        Files.write(path, bytes);
+        assertThrows(IOException.class, () -> ModSnapshot.read(path));
+    }
+
+    @Test
+    void rejectsABadMagic() throws IOException {
+        Path path = written();
+        byte[] bytes = Files.readAllBytes(path);
+        ByteBuffer.wrap(bytes).putInt(0, 0x12345678);
+        Files.write(path, bytes);
+        assertThrows(IOException.class, () -> ModSnapshot.read(path));
+    }
+
+    @Test
+    void ignoresAnotherVersion() throws IOException {
+        Path path = written();
+        byte[] bytes = Files.readAllBytes(path);
+        ByteBuffer.wrap(bytes).putInt(4, ModSnapshot.VERSION + 1);
+        Files.write(path, bytes);
+        assertNull(ModSnapshot.read(path));
+    }
+
+    @Test
+    void rejectsAFileCutShort() throws IOException {
+        Path path = written();
+        byte[] bytes = Files.readAllBytes(path);
+        Files.write(path, Arrays.copyOf(bytes, bytes.length - 10));
+        assertThrows(IOException.class, () -> ModSnapshot.read(path));
+    }
+
+    private Path written() throws IOException {
+        Path path = dir.resolve("mods.snapshot");
+        ModSnapshot.write(path, new ModFetcher.Validators("\"etag\"", "Tue, 01 Oct 2024 00:00:00 GMT"), chunks(new Random(1)));
+        return path;
+    }
+
+    /**
+     * Chunks of packages with and without details, null values, repeated strings and non-ASCII text, each numbered from 0 like parsed chunks.
+     */
+    private static List<ModFetcher.Chunk> chunks(Random random) {
+        List<ModFetcher.Chunk> chunks = new ArrayList<>();
+        for (int c = 0; c < 3; c++) {
+            List<ModPackage> packages = new ArrayList<>();
+            for (int i = 0; i < 50; i++) {
+                String name = random.nextInt(20) == 0 ? null : "Mod_" + random.nextInt(40);
+                String owner = random.nextBoolean() ? "Owner" : "Ówner" + random.nextInt(5);
+                ModDetails details = random.nextInt(8) == 0 ? null : ModDetails.of(
+                        "https://example.invalid/" + owner + "/" + name + ".zip", "Does things — " + random.nextInt(100), "",
+                        String.valueOf(random.nextBoolean()), owner, null, "1.0." + random.nextInt(10), name,
+                        "https://example.invalid/p/" + name, random.nextBoolean() ? null : "https://example.invalid");
+                packages.add(ModPackage.of(i, name, name == null ? null : owner + "-" + name, random.nextBoolean() ? null : "A mod",
+                        "2024-10-0" + (1 + random.nextInt(9)), details == null ? null : name, details));
+            }
+            chunks.add(new ModFetcher.Chunk("https://example.invalid/chunk-" + c + ".json.gz", "hash" + c, List.copyOf(packages)));
+        }
+        return chunks;
+    }
+}
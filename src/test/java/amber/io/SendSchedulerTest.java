@@ -0,0 +1,85 @@
+package amber.io;
+
+import net.dv8tion.jda.api.EmbedBuilder;
+import net.dv8tion.jda.api.entities.MessageEmbed;
+import net.dv8tion.jda.api.entities.channel.middleman.MessageChannel;
+import net.dv8tion.jda.api.requests.restaction.MessageCreateAction;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that SendScheduler drops the queue of a channel once it's idle and its last send left the duplicate window.
+ */
+class SendSchedulerTest {
+    private static final long DUPLICATE_MILLIS = 500;
+
+    @Test
+    void evictsAnIdleChannel() throws InterruptedException {
+        SendScheduler scheduler = new SendScheduler(10, DUPLICATE_MILLIS);
+        List<List<MessageEmbed>> sends = Collections.synchronizedList(new ArrayList<>());
+        MessageChannel channel = channel(1, sends);
+        MessageEmbed embed = new EmbedBuilder().setDescription("LethalThings").build();
+
+        scheduler.send(channel, List.of(embed));
+        await(() -> sends.size() == 1, "the first send");
+        assertEquals(1, scheduler.channels());
+
+        // Still within the duplicate window, so the queue is kept and the repeat is dropped.
+        scheduler.send(channel, List.of(embed));
+        Thread.sleep(50);
+        assertEquals(1, sends.size());
+        assertEquals(1, scheduler.channels());
+
+        await(() -> scheduler.channels() == 0, "the idle channel to be evicted");
+        assertEquals(0, scheduler.pending());
+
+        // A channel that comes back gets a new queue, which no longer remembers the old send.
+        scheduler.send(channel, List.of(embed));
+        await(() -> sends.size() == 2, "the send after eviction");
+    }
+
+    private static void await(BooleanSupplier condition, String what) throws InterruptedException {
+        long deadline = System.nanoTime() + 5_000_000_000L;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "Timed out waiting for " + what);
+            Thread.sleep(5);
+        }
+    }
+
+    /**
+     * A channel whose sendMessageEmbeds records the embeds and succeeds right away.
+     */
+    @SuppressWarnings("unchecked")
+    private static MessageChannel channel(long id, List<List<MessageEmbed>> sends) {
+        return stub(MessageChannel.class, (proxy, method, args) -> switch (method.getName()) {
+            case "getIdLong" -> id;
+            case "sendMessageEmbeds" -> {
+                sends.add(new ArrayList<>((Collection<MessageEmbed>) args[0]));
+                yield stub(MessageCreateAction.class, (action, call, callbacks) -> {
+                    if (call.getName().equals("queue") && callbacks != null && callbacks.length > 0 && callbacks[0] != null) {
+                        ((Consumer<Object>) callbacks[0]).accept(null);
+                    }
+                    return null;
+                });
+            }
+            case "hashCode" -> System.identityHashCode(proxy);
+            case "equals" -> proxy == args[0];
+            default -> null;
+        });
+    }
+
+    private static <T> T stub(Class<T> type, InvocationHandler handler) {
+        return type.cast(Proxy.newProxyInstance(SendSchedulerTest.class.getClassLoader(), new Class<?>[]{type}, handler));
+    }
+}
@@ -0,0 +1,79 @@
+package amber.io;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * Checks TextNormalizer against the regexes FixerBot.clean and BotUtils used before it, and containsLowercase against a lowercase copy, on random strings.
+ */
+class TextNormalizerTest {
+    private static final String CHARS = "aZ09_- .Ii'\tçÉ€ı";
+
+    @Test
+    void matchesTheRegexes() {
+        Random random = new Random(5);
+        for (int round = 0; round < 20_000; round++) {
+            String s = randomString(random, random.nextInt(30));
+            String context = "'" + s + "'";
+            String cleaned = s.replaceAll("[^A-Za-z0-9]+", "").toLowerCase(Locale.ROOT);
+            List<String> tokens = Arrays.stream(s.split("[^A-Za-z0-9]+")).map(t -> t.toLowerCase(Locale.ROOT)).filter(t -> !t.isEmpty()).toList();
+
+            assertEquals(cleaned, TextNormalizer.clean(s), context);
+            assertEquals(tokens, TextNormalizer.tokens(s), context);
+            assertEquals(cleaned.length(), TextNormalizer.alphanumericLength(s), context);
+
+            String token = randomString(random, 1 + random.nextInt(3)).replaceAll("[^A-Za-z0-9]+", "");
+            if (token.isEmpty()) continue;
+            boolean expected = Arrays.stream(s.split("[^A-Za-z0-9]+")).anyMatch(t -> t.equalsIgnoreCase(token));
+            assertEquals(expected, TextNormalizer.hasToken(s, token), context + " has " + token);
+        }
+    }
+
+    @Test
+    void containsLowercaseMatchesALowercaseCopy() {
+        String chars = CHARS + "ΣσςİiŁß\uD801\uDC00\uD801\uDC28";
+        Random random = new Random(13);
+        Locale locale = Locale.getDefault();
+        try {
+            for (int round = 0; round < 40_000; round++) {
+                if (round % 10_000 == 0) Locale.setDefault(round == 20_000 ? Locale.forLanguageTag("tr") : Locale.ROOT);
+                String s = randomString(random, chars, random.nextInt(20));
+                String lower = s.toLowerCase();
+                String want;
+                if (random.nextBoolean() && !lower.isEmpty()) {
+                    int from = random.nextInt(lower.length());
+                    want = lower.substring(from, Math.min(lower.length(), from + random.nextInt(5)));
+                } else {
+                    want = randomString(random, chars, random.nextInt(3)).toLowerCase();
+                }
+                assertEquals(lower.contains(want), TextNormalizer.containsLowercase(s, want), "'" + s + "' contains '" + want + "'");
+            }
+        } finally {
+            Locale.setDefault(locale);
+        }
+    }
+
+    @Test
+    void returnsCleanInputAsIs() {
+        String clean = "lethalthings2";
+        assertSame(clean, TextNormalizer.clean(clean));
+        assertEquals("", TextNormalizer.clean("-_- "));
+    }
+
+    private static String randomString(Random random, int length) {
+        return randomString(random, CHARS, length);
+    }
+
+    private static String randomString(Random random, String chars, int length) {
+        StringBuilder s = new StringBuilder(length);
+        for (int i = 0; i < length; i++) s.append(chars.charAt(random.nextInt(chars.length())));
+        return s.toString();
+    }
+}
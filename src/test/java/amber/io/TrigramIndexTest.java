@@ -0,0 +1,73 @@
+package amber.io;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * Checks TrigramIndex.firstContaining against the scan BotUtils.findByTitle has always done, lowercasing the name and description of every package.
+ */
+class TrigramIndexTest {
+    private static final String[] WORDS = {"More", "Company", "lethal", "THINGS", "suits", "emotes", "bigger", "Lobby", "ship", "loot",
+            "mod", "API", "lib", "core", "fix", "HUD", "radar", "scrap", "moon", "terminal", "Ünïcode", "ça"};
+
+    static ModPackage scan(List<ModPackage> packages, String wantLower, int limit) {
+        for (ModPackage p : packages) {
+            if (p.ordinal() >= limit) return null;
+            if (p.name() != null && p.name().toLowerCase().contains(wantLower)) return p;
+            if (p.description() != null && p.description().toLowerCase().contains(wantLower)) return p;
+        }
+        return null;
+    }
+
+    @Test
+    void matchesAScanOverEveryPackage() {
+        Random random = new Random(11);
+        List<ModPackage> packages = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            String name = random.nextInt(50) == 0 ? null : phrase(random, 1 + random.nextInt(3), "");
+            String description = random.nextInt(5) == 0 ? null : phrase(random, random.nextInt(12), " ");
+            packages.add(ModPackage.of(i, name, name == null ? null : "Owner-" + name, description, null, null, null));
+        }
+        TrigramIndex index = new TrigramIndex(packages);
+
+        for (int round = 0; round < 5000; round++) {
+            String want = query(random, packages);
+            int limit = random.nextBoolean() ? packages.size() : random.nextInt(packages.size() + 10);
+            assertSame(scan(packages, want, limit), index.firstContaining(want, limit), "'" + want + "' before " + limit);
+        }
+    }
+
+    private static String query(Random random, List<ModPackage> packages) {
+        switch (random.nextInt(6)) {
+            case 0 -> {
+                return phrase(random, 1 + random.nextInt(2), " ").trim().toLowerCase();
+            }
+            case 1 -> {
+                // Shorter than a trigram, so firstContaining falls back to a scan.
+                return WORDS[random.nextInt(WORDS.length)].substring(0, random.nextInt(3)).toLowerCase();
+            }
+            default -> {
+                ModPackage p = packages.get(random.nextInt(packages.size()));
+                String source = random.nextBoolean() && p.description() != null ? p.description() : p.name();
+                if (source == null || source.isEmpty()) return "mod";
+                int from = random.nextInt(source.length());
+                int to = Math.min(source.length(), from + 1 + random.nextInt(12));
+                return source.substring(from, to).trim().toLowerCase();
+            }
+        }
+    }
+
+    private static String phrase(Random random, int words, String separator) {
+        StringBuilder s = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            if (i > 0) s.append(separator);
+            s.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        return s.toString();
+    }
+}